@@ -0,0 +1,13 @@
+package com.lqb.springframework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在类上：这个bean不在启动时创建，第一次getBean时才创建
+ * 标注在@Autowired成员变量上：注入一个代理，第一次调用方法时才去获取真正的bean（只支持接口类型）
+ */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Lazy {
+}
@@ -0,0 +1,14 @@
+package com.lqb.springframework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 切面的优先级，值越小优先级越高：前置通知越先执行，后置通知越后执行
+ * 没有标注的切面优先级最低，配置文件中的order优先于注解
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Order {
+    int value() default Integer.MAX_VALUE;
+}
@@ -0,0 +1,12 @@
+package com.lqb.springframework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 同一个类型有多个bean时，按类型注入或者getBean(Class)优先选择被@Primary标注的bean
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Primary {
+}
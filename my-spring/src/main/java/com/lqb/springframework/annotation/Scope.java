@@ -0,0 +1,19 @@
+package com.lqb.springframework.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * bean的作用域：
+ * singleton：整个容器只有一个实例（默认）
+ * prototype：每次getBean都得到一个新实例，poolSize大于0时从对象池中借出，用完通过releaseBean归还
+ * request：同一个请求内共享一个实例，只能在DispatcherServlet处理请求的线程中获取
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Scope {
+    String value() default "singleton";
+
+    /**prototype对象池的大小，0表示不使用对象池*/
+    int poolSize() default 0;
+}
@@ -1,13 +1,13 @@
 package com.lqb.springframework.aop;
 
 
+import com.lqb.springframework.aop.intercept.InterceptorChain;
 import com.lqb.springframework.aop.intercept.MethodInvocation;
 import com.lqb.springframework.aop.support.AdvisedSupport;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.List;
 
 public class JdkDynamicAopProxy implements AopProxy, InvocationHandler {
 
@@ -29,17 +29,24 @@ public class JdkDynamicAopProxy implements AopProxy, InvocationHandler {
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        //获取拦截器链
-        List<Object> interceptorsAndDynamicMethodMatchers =
-                this.advised.getInterceptorsAndDynamicInterceptionAdvice(method, this.advised.getTargetClass());
-        //外层拦截器，用于控制拦截器链的执行
+        //获取创建代理时生成的拦截器链
+        InterceptorChain chain = this.advised.getInterceptorChain(method);
+        //不需要拦截的方法直接调用被代理对象
+        if (chain.isEmpty()) {
+            return chain.invokeTarget(this.advised.getTarget(), args);
+        }
+        //没有通知需要JoinPoint，按下标执行拦截器链，不分配对象
+        if (!chain.needsJoinPoint()) {
+            return chain.proceed(0, this.advised.getTarget(), args);
+        }
+        //外层拦截器，用于控制拦截器链的执行，会作为JoinPoint传给通知方法
         MethodInvocation invocation = new MethodInvocation(
                 proxy,
                 this.advised.getTarget(),
                 method,
                 args,
                 this.advised.getTargetClass(),
-                interceptorsAndDynamicMethodMatchers
+                chain
         );
         //开始连接器链的调用
         return invocation.proceed();
@@ -1,42 +1,71 @@
 package com.lqb.springframework.aop.aspect;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 
+/**
+ * 通知的基类，创建之后不再修改，可以被多个线程同时调用
+ * 通知方法预先绑定成(JoinPoint, Object, Throwable)Object的MethodHandle，调用时不需要创建参数数组
+ */
 public abstract class AbstractAspectAdvice implements Advice {
 
-    /**通知方法*/
-    private Method aspectMethod;
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
 
-    /**切面类*/
-    private Object aspectTarget;
+    /**绑定时的参数：JoinPoint、返回值、异常，以及其他类型的参数传入的null*/
+    private static final MethodType ADVICE_TYPE = MethodType.methodType(Object.class,
+            JoinPoint.class, Object.class, Throwable.class, Object.class);
+
+    /**绑定了切面对象的通知方法，类型为(JoinPoint, Object, Throwable)Object*/
+    private final MethodHandle advice;
+
+    /**通知方法是否有JoinPoint参数*/
+    private final boolean needsJoinPoint;
 
     public AbstractAspectAdvice(Method aspectMethod, Object aspectTarget) {
-        this.aspectMethod = aspectMethod;
-        this.aspectTarget = aspectTarget;
+        //给通知方法的入参赋值：JoinPoint、Throwable、Object分别对应JoinPoint、异常、返回值，其他类型为null
+        Class<?>[] paramTypes = aspectMethod.getParameterTypes();
+        int[] reorder = new int[paramTypes.length];
+        Class<?>[] bindTypes = new Class<?>[paramTypes.length];
+        boolean needsJoinPoint = false;
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (paramTypes[i] == JoinPoint.class) {
+                reorder[i] = 0;
+                needsJoinPoint = true;
+            } else if (paramTypes[i] == Throwable.class) {
+                reorder[i] = 2;
+            } else if (paramTypes[i] == Object.class) {
+                reorder[i] = 1;
+            } else {
+                reorder[i] = 3;
+            }
+            bindTypes[i] = ADVICE_TYPE.parameterType(reorder[i]);
+        }
+        this.needsJoinPoint = needsJoinPoint;
+
+        try {
+            //切面类不是public时也能调用
+            aspectMethod.setAccessible(true);
+            MethodHandle handle = LOOKUP.unreflect(aspectMethod).bindTo(aspectTarget)
+                    .asType(MethodType.methodType(Object.class, bindTypes));
+            handle = MethodHandles.permuteArguments(handle, ADVICE_TYPE, reorder);
+            this.advice = MethodHandles.insertArguments(handle, 3, (Object) null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access advice method " + aspectMethod, e);
+        }
+    }
+
+    public boolean needsJoinPoint() {
+        return this.needsJoinPoint;
     }
 
     /**
-     * 调用通知方法
+     * 调用通知方法，调用相关的数据都通过参数传入，不需要JoinPoint的通知joinPoint可以为null
      */
     public Object invokeAdviceMethod(JoinPoint joinPoint, Object returnValue, Throwable tx) throws Throwable {
-        Class<?>[] paramTypes = this.aspectMethod.getParameterTypes();
-        if (null == paramTypes || paramTypes.length == 0) {
-            return this.aspectMethod.invoke(aspectTarget);
-        } else {
-            //给通知方法的入参赋值
-            Object[] args = new Object[paramTypes.length];
-            for (int i = 0; i < paramTypes.length; i++) {
-                if (paramTypes[i] == JoinPoint.class) {
-                    args[i] = joinPoint;
-                } else if (paramTypes[i] == Throwable.class) {
-                    args[i] = tx;
-                } else if (paramTypes[i] == Object.class) {
-                    args[i] = returnValue;
-                }
-            }
-            return this.aspectMethod.invoke(aspectTarget, args);
-        }
+        return (Object) this.advice.invokeExact(joinPoint, returnValue, tx);
     }
 
 
@@ -1,5 +1,6 @@
 package com.lqb.springframework.aop.aspect;
 
+import com.lqb.springframework.aop.intercept.InterceptorChain;
 import com.lqb.springframework.aop.intercept.MethodInterceptor;
 import com.lqb.springframework.aop.intercept.MethodInvocation;
 
@@ -7,11 +8,10 @@ import java.lang.reflect.Method;
 
 /**
  * 后置通知
+ * 同一个实例被所有线程共用，不保存任何调用状态，当前调用的JoinPoint通过参数传递
  */
 public class AfterReturningAdviceInterceptor extends AbstractAspectAdvice implements MethodInterceptor {
 
-    private JoinPoint joinPoint;
-
     public AfterReturningAdviceInterceptor(Method aspectMethod, Object aspectTarget) {
         super(aspectMethod, aspectTarget);
     }
@@ -21,12 +21,18 @@ public class AfterReturningAdviceInterceptor extends AbstractAspectAdvice implem
         //先调用下一个拦截器
         Object retVal = mi.proceed();
         //再调用后置通知
-        this.joinPoint = mi;
-        this.afterReturning(retVal, mi.getMethod(), mi.getArguments(), mi.getThis());
+        this.afterReturning(mi, retVal);
+        return retVal;
+    }
+
+    @Override
+    public Object invoke(InterceptorChain chain, int index, Object target, Object[] arguments) throws Throwable {
+        Object retVal = chain.proceed(index + 1, target, arguments);
+        this.afterReturning(null, retVal);
         return retVal;
     }
 
-    private void afterReturning(Object retVal, Method method, Object[] arguments, Object aThis) throws Throwable {
-        super.invokeAdviceMethod(this.joinPoint, retVal, null);
+    private void afterReturning(JoinPoint joinPoint, Object retVal) throws Throwable {
+        super.invokeAdviceMethod(joinPoint, retVal, null);
     }
 }
@@ -1,5 +1,6 @@
 package com.lqb.springframework.aop.aspect;
 
+import com.lqb.springframework.aop.intercept.InterceptorChain;
 import com.lqb.springframework.aop.intercept.MethodInterceptor;
 import com.lqb.springframework.aop.intercept.MethodInvocation;
 
@@ -7,14 +8,16 @@ import java.lang.reflect.Method;
 
 /**
  * 异常通知
+ * 同一个实例被所有线程共用，创建之后不再修改
  */
 public class AfterThrowingAdviceInterceptor extends AbstractAspectAdvice implements MethodInterceptor {
 
+    /**异常的类型名，创建之后不再修改*/
+    private final String throwingName;
 
-    private String throwingName;
-
-    public AfterThrowingAdviceInterceptor(Method aspectMethod, Object aspectTarget) {
+    public AfterThrowingAdviceInterceptor(Method aspectMethod, Object aspectTarget, String throwingName) {
         super(aspectMethod, aspectTarget);
+        this.throwingName = throwingName;
     }
 
     @Override
@@ -23,13 +26,23 @@ public class AfterThrowingAdviceInterceptor extends AbstractAspectAdvice impleme
             //直接调用下一个拦截器，如果不出现异常就不调用异常通知
             return mi.proceed();
         } catch (Throwable e) {
-            //异常捕捉中调用通知方法
-            invokeAdviceMethod(mi, null, e.getCause());
+            //异常捕捉中调用通知方法，被代理的方法通过MethodHandle调用，异常没有被包装
+            invokeAdviceMethod(mi, null, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Object invoke(InterceptorChain chain, int index, Object target, Object[] arguments) throws Throwable {
+        try {
+            return chain.proceed(index + 1, target, arguments);
+        } catch (Throwable e) {
+            invokeAdviceMethod(null, null, e);
             throw e;
         }
     }
 
-    public void setThrowName(String throwName) {
-        this.throwingName = throwName;
+    public String getThrowingName() {
+        return this.throwingName;
     }
 }
@@ -1,5 +1,6 @@
 package com.lqb.springframework.aop.aspect;
 
+import com.lqb.springframework.aop.intercept.InterceptorChain;
 import com.lqb.springframework.aop.intercept.MethodInterceptor;
 import com.lqb.springframework.aop.intercept.MethodInvocation;
 
@@ -7,24 +8,28 @@ import java.lang.reflect.Method;
 
 /**
  * 前置通知
+ * 同一个实例被所有线程共用，不保存任何调用状态，当前调用的JoinPoint通过参数传递
  */
 public class MethodBeforeAdviceInterceptor extends AbstractAspectAdvice implements MethodInterceptor {
 
-    private JoinPoint joinPoint;
-
     public MethodBeforeAdviceInterceptor(Method aspectMethod, Object aspectTarget) {
         super(aspectMethod, aspectTarget);
     }
 
-    private void before(Method method, Object[] args, Object target) throws Throwable {
-        super.invokeAdviceMethod(this.joinPoint, null, null);
+    private void before(JoinPoint joinPoint) throws Throwable {
+        super.invokeAdviceMethod(joinPoint, null, null);
     }
 
     @Override
     public Object invoke(MethodInvocation mi) throws Throwable {
-        this.joinPoint = mi;
         //在调用下一个拦截器前先执行前置通知
-        before(mi.getMethod(), mi.getArguments(), mi.getThis());
+        before(mi);
         return mi.proceed();
     }
+
+    @Override
+    public Object invoke(InterceptorChain chain, int index, Object target, Object[] arguments) throws Throwable {
+        before(null);
+        return chain.proceed(index + 1, target, arguments);
+    }
 }
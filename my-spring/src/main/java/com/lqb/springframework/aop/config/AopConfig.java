@@ -23,4 +23,7 @@ public class AopConfig {
     //抛出的异常类型
     private String aspectAfterThrowingName;
 
+    //切面的优先级，值越小越先执行，为null时取切面类上的@Order
+    private Integer order;
+
 }
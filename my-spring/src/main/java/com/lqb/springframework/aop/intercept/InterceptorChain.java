@@ -0,0 +1,70 @@
+package com.lqb.springframework.aop.intercept;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * 一个被代理方法的拦截器链，创建代理时生成，之后不再修改
+ * 被代理的方法通过MethodHandle调用，不走反射的Method.invoke，异常也不会被包装成InvocationTargetException
+ */
+public class InterceptorChain {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    public static final MethodInterceptor[] NO_INTERCEPTORS = new MethodInterceptor[0];
+
+    /**按执行顺序排列的拦截器，不能修改*/
+    private final MethodInterceptor[] interceptors;
+
+    /**调用被代理的方法，(Object, Object[])Object*/
+    private final MethodHandle invoker;
+
+    /**是否有通知需要JoinPoint，没有的话调用时不创建MethodInvocation*/
+    private final boolean needsJoinPoint;
+
+    public InterceptorChain(Method method, MethodInterceptor[] interceptors) throws IllegalAccessException {
+        this.interceptors = interceptors;
+        boolean needsJoinPoint = false;
+        for (MethodInterceptor interceptor : interceptors) {
+            needsJoinPoint |= interceptor.needsJoinPoint();
+        }
+        this.needsJoinPoint = needsJoinPoint;
+        //被代理类不是public时也能调用
+        method.setAccessible(true);
+        this.invoker = LOOKUP.unreflect(method)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    }
+
+    public MethodInterceptor[] getInterceptors() {
+        return this.interceptors;
+    }
+
+    public boolean isEmpty() {
+        return this.interceptors.length == 0;
+    }
+
+    public boolean needsJoinPoint() {
+        return this.needsJoinPoint;
+    }
+
+    /**
+     * 从第index个拦截器开始执行，拦截器都执行完了调用被代理的方法
+     * 只在没有通知需要JoinPoint时使用，调用状态只有下标、被代理对象和参数，不分配对象
+     */
+    public Object proceed(int index, Object target, Object[] arguments) throws Throwable {
+        if (index == this.interceptors.length) {
+            return invokeTarget(target, arguments);
+        }
+        return this.interceptors[index].invoke(this, index, target, arguments);
+    }
+
+    /**
+     * 直接调用被代理的方法
+     */
+    public Object invokeTarget(Object target, Object[] arguments) throws Throwable {
+        return (Object) this.invoker.invokeExact(target, arguments);
+    }
+}
@@ -2,4 +2,19 @@ package com.lqb.springframework.aop.intercept;
 
 public interface MethodInterceptor {
     Object invoke(MethodInvocation invocation) throws Throwable;
+
+    /**
+     * 通知是否需要JoinPoint，不需要时拦截器链按下标执行，不创建MethodInvocation
+     */
+    default boolean needsJoinPoint() {
+        return true;
+    }
+
+    /**
+     * 不需要JoinPoint时的调用方式，通过chain.proceed(index + 1, target, arguments)调用下一个拦截器
+     * 只有needsJoinPoint返回false时才会被调用
+     */
+    default Object invoke(InterceptorChain chain, int index, Object target, Object[] arguments) throws Throwable {
+        throw new UnsupportedOperationException(getClass().getName() + " requires a MethodInvocation");
+    }
 }
@@ -5,28 +5,36 @@ import com.lqb.springframework.aop.aspect.JoinPoint;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
+/**
+ * 一次被代理方法的调用，按顺序执行拦截器链，最后调用被代理的方法
+ * 实例会作为JoinPoint传给通知方法，所以只在有通知需要JoinPoint时才创建，每次调用一个新的实例，
+ * 通知方法可以在调用结束之后继续持有JoinPoint，嵌套调用之间互不影响
+ * 没有通知需要JoinPoint时由InterceptorChain.proceed按下标执行，不创建实例
+ */
 public class MethodInvocation implements JoinPoint {
 
     /**代理对象*/
-    private Object proxy;
+    private final Object proxy;
 
     /**被代理对象的class*/
-    private Class<?> targetClass;
+    private final Class<?> targetClass;
 
     /**被代理的对象*/
-    private Object target;
+    private final Object target;
 
     /**被代理的方法*/
-    private Method method;
+    private final Method method;
 
     /**被代理的方法的入参*/
-    private Object [] arguments;
+    private final Object [] arguments;
 
     /**拦截器链*/
-    private List<Object> interceptorsAndDynamicMethodMatchers;
+    private final MethodInterceptor[] interceptors;
+
+    /**调用被代理的方法*/
+    private final InterceptorChain chain;
 
     /**用户参数*/
     private Map<String, Object> userAttributes;
@@ -39,14 +47,14 @@ public class MethodInvocation implements JoinPoint {
                             Method method,
                             Object[] arguments,
                             Class<?> targetClass,
-                            List<Object> interceptorsAndDynamicMethodMatchers) {
-
+                            InterceptorChain chain) {
         this.proxy = proxy;
         this.target = target;
         this.targetClass = targetClass;
         this.method = method;
         this.arguments = arguments;
-        this.interceptorsAndDynamicMethodMatchers = interceptorsAndDynamicMethodMatchers;
+        this.chain = chain;
+        this.interceptors = chain.getInterceptors();
     }
 
     /**
@@ -54,21 +62,12 @@ public class MethodInvocation implements JoinPoint {
      */
     public Object proceed() throws Throwable {
         //拦截器执行完了，最后真正执行被代理的方法
-        if (this.currentInterceptorIndex == this.interceptorsAndDynamicMethodMatchers.size() - 1) {
-            return this.method.invoke(this.target,this.arguments);
+        if (this.currentInterceptorIndex == this.interceptors.length - 1) {
+            return this.chain.invokeTarget(this.target, this.arguments);
         }
 
-        //获取一个拦截器
-        Object interceptorOrInterceptionAdvice =
-                this.interceptorsAndDynamicMethodMatchers.get(++this.currentInterceptorIndex);
-        if (interceptorOrInterceptionAdvice instanceof MethodInterceptor) {
-            MethodInterceptor mi = (MethodInterceptor) interceptorOrInterceptionAdvice;
-            //执行通知方法
-            return mi.invoke(this);
-        } else {
-            //跳过，调用下一个拦截器
-            return proceed();
-        }
+        //执行下一个拦截器的通知方法
+        return this.interceptors[++this.currentInterceptorIndex].invoke(this);
     }
 
     @Override
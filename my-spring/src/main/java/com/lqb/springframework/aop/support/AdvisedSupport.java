@@ -1,18 +1,16 @@
 package com.lqb.springframework.aop.support;
 
 
-import com.lqb.springframework.aop.aspect.AfterReturningAdviceInterceptor;
-import com.lqb.springframework.aop.aspect.AfterThrowingAdviceInterceptor;
-import com.lqb.springframework.aop.aspect.MethodBeforeAdviceInterceptor;
-import com.lqb.springframework.aop.config.AopConfig;
+import com.lqb.springframework.aop.intercept.InterceptorChain;
+import com.lqb.springframework.aop.intercept.MethodInterceptor;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AdvisedSupport {
 
@@ -22,17 +20,58 @@ public class AdvisedSupport {
     /**被代理的对象实力*/
     private Object target;
 
-    /**被代理的方法对应的拦截器集合*/
-    private Map<Method, List<Object>> methodCache;
+    /**被代理的方法（包括代理接口中的方法）对应的拦截器链，创建代理时生成*/
+    private Map<Method, InterceptorChain> methodCache;
 
-    /**AOP外部配置*/
-    private AopConfig config;
+    /**符合被代理类的切面，已经按优先级排好序*/
+    private List<AspectAdvisor> advisors;
 
-    /**切点正则表达式*/
-    private Pattern pointCutClassPattern;
+    /**已知的方法匹配结果（如从启动快照中恢复的），为null时创建代理时再匹配*/
+    private Map<Method, List<AspectAdvisor>> matchedMethods;
 
-    public AdvisedSupport(AopConfig config) {
-        this.config = config;
+    public AdvisedSupport(List<AspectAdvisor> advisors) {
+        this.advisors = advisors;
+    }
+
+    /**
+     * 找出类符合切点的切面，保持原来的顺序，为空表示不需要代理
+     */
+    public static List<AspectAdvisor> findAdvisors(Class<?> targetClass, List<AspectAdvisor> candidates) {
+        List<AspectAdvisor> advisors = new ArrayList<>();
+        for (AspectAdvisor advisor : candidates) {
+            if (advisor.getPointcut().matches(targetClass)) {
+                advisors.add(advisor);
+            }
+        }
+        return advisors;
+    }
+
+    /**
+     * 用编译好的切点匹配被代理类的public方法，结果中只有需要拦截的方法，切面按优先级排序
+     */
+    public static Map<Method, List<AspectAdvisor>> matchMethods(Class<?> targetClass, List<AspectAdvisor> advisors) {
+        Map<Method, List<AspectAdvisor>> matched = new LinkedHashMap<>();
+        for (Method m : targetClass.getMethods()) {
+            List<AspectAdvisor> methodAdvisors = null;
+            for (AspectAdvisor advisor : advisors) {
+                if (!advisor.getPointcut().matches(m)) {
+                    continue;
+                }
+                if (methodAdvisors == null) {
+                    methodAdvisors = new ArrayList<>(advisors.size());
+                    matched.put(m, methodAdvisors);
+                }
+                methodAdvisors.add(advisor);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 使用已知的方法匹配结果，必须在setTargetClass之前调用，创建代理时不再匹配切点
+     */
+    public void setMatchedMethods(Map<Method, List<AspectAdvisor>> matchedMethods) {
+        this.matchedMethods = matchedMethods;
     }
 
     public Class<?> getTargetClass() {
@@ -44,97 +83,71 @@ public class AdvisedSupport {
     }
 
     /**
-     * 获取拦截器
+     * 获取拦截器链，不需要拦截的方法链为空
      */
-    public List<Object> getInterceptorsAndDynamicInterceptionAdvice(Method method, Class<?> targetClass) throws Exception {
-        List<Object> cached = methodCache.get(method);
+    public InterceptorChain getInterceptorChain(Method method) throws Exception {
+        InterceptorChain cached = methodCache.get(method);
         if (cached == null) {
+            //创建代理时没有登记的方法（如Object中的方法）
             Method m = targetClass.getMethod(method.getName(), method.getParameterTypes());
             cached = methodCache.get(m);
-            this.methodCache.put(m, cached);
+            if (cached == null) {
+                cached = new InterceptorChain(m, InterceptorChain.NO_INTERCEPTORS);
+            }
+            InterceptorChain existing = this.methodCache.putIfAbsent(method, cached);
+            if (existing != null) {
+                cached = existing;
+            }
         }
-
         return cached;
     }
 
-    public void setTargetClass(Class<?> targetClass) {
+    public void setTargetClass(Class<?> targetClass) throws Exception {
         this.targetClass = targetClass;
         parse();
     }
 
     /**
-     * 解析AOP配置，创建拦截器
+     * 用编译好的切点匹配被代理类的方法，把符合的切面的拦截器按优先级合并成一条链
+     * 优先级高的切面在外层，只有一个切面符合时直接共用它的拦截器数组
+     * 代理接口中的方法也登记一份，调用时不需要再查找被代理类的方法
      */
-    private void parse() {
-        //编译切点表达式为正则
-        String pointCut = config.getPointCut()
-                .replaceAll("\\.", "\\\\.")
-                .replaceAll("\\\\.\\*", ".*")
-                .replaceAll("\\(", "\\\\(")
-                .replaceAll("\\)", "\\\\)");
-        //pointCut=public .* com.lqb.demo.service..*Service..*(.*)
-        String pointCutForClassRegex = pointCut.substring(0, pointCut.lastIndexOf("\\(") - 4);
-        pointCutClassPattern = Pattern.compile("class " + pointCutForClassRegex.substring(
-                pointCutForClassRegex.lastIndexOf(" ") + 1));
-
-        try {
-            //保存切面的所有通知方法
-            Map<String, Method> aspectMethods = new HashMap<>();
-            Class aspectClass = Class.forName(this.config.getAspectClass());
-            for (Method m : aspectClass.getMethods()) {
-                aspectMethods.put(m.getName(), m);
+    private void parse() throws Exception {
+        methodCache = new ConcurrentHashMap<>();
+        Map<Method, List<AspectAdvisor>> matched = this.matchedMethods;
+        if (matched == null) {
+            //类不需要代理就不用再匹配方法了
+            if (!pointCutMatch()) {
+                return;
             }
-
-            //遍历被代理类的所有方法，为符合切点表达式的方法创建拦截器
-            methodCache = new HashMap<>();
-            Pattern pattern = Pattern.compile(pointCut);
-            for (Method m : this.targetClass.getMethods()) {
-                String methodString = m.toString();
-                //为了能正确匹配这里去除函数签名尾部的throws xxxException
-                if (methodString.contains("throws")) {
-                    methodString = methodString.substring(0, methodString.lastIndexOf("throws")).trim();
-                }
-
-                Matcher matcher = pattern.matcher(methodString);
-                if (matcher.matches()) {
-                    //执行器链
-                    List<Object> advices = new LinkedList<>();
-
-                    //创建前置拦截器
-                    if (!(null == config.getAspectBefore() || "".equals(config.getAspectBefore()))) {
-                        //创建一个Advivce
-                        MethodBeforeAdviceInterceptor beforeAdvice = new MethodBeforeAdviceInterceptor(
-                                aspectMethods.get(config.getAspectBefore()),
-                                aspectClass.newInstance()
-                        );
-                        advices.add(beforeAdvice);
-                    }
-                    //创建后置拦截器
-                    if (!(null == config.getAspectAfter() || "".equals(config.getAspectAfter()))) {
-                        AfterReturningAdviceInterceptor returningAdvice = new AfterReturningAdviceInterceptor(
-                                aspectMethods.get(config.getAspectAfter()),
-                                aspectClass.newInstance()
-                        );
-                        advices.add(returningAdvice);
-                    }
-                    //创建异常拦截器
-                    if (!(null == config.getAspectAfterThrow() || "".equals(config.getAspectAfterThrow()))) {
-                        AfterThrowingAdviceInterceptor throwingAdvice = new AfterThrowingAdviceInterceptor(
-                                aspectMethods.get(config.getAspectAfterThrow()),
-                                aspectClass.newInstance()
-                        );
-                        throwingAdvice.setThrowName(config.getAspectAfterThrowingName());
-                        advices.add(throwingAdvice);
-                    }
-
-                    //保存被代理方法和执行器链的对应关系
-                    methodCache.put(m, advices);
+            matched = matchMethods(this.targetClass, this.advisors);
+        }
+        for (Method m : this.targetClass.getMethods()) {
+            //保存被代理方法和执行器链的对应关系
+            methodCache.put(m, new InterceptorChain(m, mergeInterceptors(matched.get(m))));
+        }
+        for (Class<?> proxyInterface : this.targetClass.getInterfaces()) {
+            for (Method m : proxyInterface.getMethods()) {
+                InterceptorChain chain = methodCache.get(this.targetClass.getMethod(m.getName(), m.getParameterTypes()));
+                if (chain != null) {
+                    methodCache.put(m, chain);
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+    }
 
+    private static MethodInterceptor[] mergeInterceptors(List<AspectAdvisor> advisors) {
+        if (advisors == null || advisors.isEmpty()) {
+            return InterceptorChain.NO_INTERCEPTORS;
+        }
+        MethodInterceptor[] interceptors = advisors.get(0).getInterceptors();
+        for (int i = 1; i < advisors.size(); i++) {
+            MethodInterceptor[] next = advisors.get(i).getInterceptors();
+            MethodInterceptor[] merged = Arrays.copyOf(interceptors, interceptors.length + next.length);
+            System.arraycopy(next, 0, merged, interceptors.length, next.length);
+            interceptors = merged;
+        }
+        return interceptors;
     }
 
     public void setTarget(Object target) {
@@ -145,6 +158,11 @@ public class AdvisedSupport {
      * 判断一个类是否需要被代理
      */
     public boolean pointCutMatch() {
-        return pointCutClassPattern.matcher(this.targetClass.toString()).matches();
+        for (AspectAdvisor advisor : this.advisors) {
+            if (advisor.getPointcut().matches(this.targetClass)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.lqb.springframework.aop.support;
+
+import com.lqb.springframework.annotation.Order;
+import com.lqb.springframework.aop.aspect.AfterReturningAdviceInterceptor;
+import com.lqb.springframework.aop.aspect.AfterThrowingAdviceInterceptor;
+import com.lqb.springframework.aop.aspect.MethodBeforeAdviceInterceptor;
+import com.lqb.springframework.aop.config.AopConfig;
+import com.lqb.springframework.aop.intercept.MethodInterceptor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译好的切面：切点加上通知对应的拦截器
+ * 每个容器根据AopConfig创建一次，切面类、通知方法只解析一次，所有被代理的bean共用同一组拦截器
+ */
+public class AspectAdvisor {
+
+    /**按优先级排序，值越小越靠前，相同时保持配置的顺序*/
+    public static final Comparator<AspectAdvisor> ORDER_COMPARATOR = Comparator.comparingInt(AspectAdvisor::getOrder);
+
+    private final AspectJExpressionPointcut pointcut;
+
+    /**切面类*/
+    private final Class<?> aspectClass;
+
+    /**优先级，值越小越先执行*/
+    private final int order;
+
+    /**按执行顺序排列的拦截器，所有方法共用，不能修改*/
+    private final MethodInterceptor[] interceptors;
+
+    public AspectAdvisor(AopConfig config) throws Exception {
+        this.pointcut = new AspectJExpressionPointcut(config.getPointCut());
+
+        //保存切面的所有通知方法
+        Map<String, Method> aspectMethods = new HashMap<>();
+        Class<?> aspectClass = Class.forName(config.getAspectClass());
+        this.aspectClass = aspectClass;
+        for (Method m : aspectClass.getMethods()) {
+            aspectMethods.put(m.getName(), m);
+        }
+        Object aspectTarget = aspectClass.newInstance();
+
+        //配置文件中的order优先，其次是切面类上的@Order
+        if (config.getOrder() != null) {
+            this.order = config.getOrder();
+        } else if (aspectClass.isAnnotationPresent(Order.class)) {
+            this.order = aspectClass.getAnnotation(Order.class).value();
+        } else {
+            this.order = Integer.MAX_VALUE;
+        }
+
+        List<MethodInterceptor> advices = new ArrayList<>();
+        //创建前置拦截器
+        if (!(null == config.getAspectBefore() || "".equals(config.getAspectBefore()))) {
+            advices.add(new MethodBeforeAdviceInterceptor(aspectMethods.get(config.getAspectBefore()), aspectTarget));
+        }
+        //创建后置拦截器
+        if (!(null == config.getAspectAfter() || "".equals(config.getAspectAfter()))) {
+            advices.add(new AfterReturningAdviceInterceptor(aspectMethods.get(config.getAspectAfter()), aspectTarget));
+        }
+        //创建异常拦截器
+        if (!(null == config.getAspectAfterThrow() || "".equals(config.getAspectAfterThrow()))) {
+            advices.add(new AfterThrowingAdviceInterceptor(aspectMethods.get(config.getAspectAfterThrow()),
+                    aspectTarget, config.getAspectAfterThrowingName()));
+        }
+        this.interceptors = advices.toArray(new MethodInterceptor[0]);
+    }
+
+    public AspectJExpressionPointcut getPointcut() {
+        return this.pointcut;
+    }
+
+    public Class<?> getAspectClass() {
+        return this.aspectClass;
+    }
+
+    public int getOrder() {
+        return this.order;
+    }
+
+    public MethodInterceptor[] getInterceptors() {
+        return this.interceptors;
+    }
+}
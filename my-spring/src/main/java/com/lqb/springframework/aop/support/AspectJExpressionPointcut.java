@@ -0,0 +1,194 @@
+package com.lqb.springframework.aop.support;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 切点，由切点表达式编译而来，每个容器只编译一次，所有bean共用
+ * 先用类过滤器判断类是否需要代理，再用方法匹配器判断每个方法是否需要拦截
+ *
+ * 表达式格式：[execution(] [修饰符] 返回类型 声明类型.方法名(参数列表) [)]，如
+ * public * demo.service..*Service.*(..)
+ * 类型中*匹配不含.的任意字符，..匹配任意层包；参数列表中*匹配一个参数，..匹配任意个参数
+ * 兼容旧的正则写法 public .* demo.service..*Service..*(.*)：.*表示任意类型，(.*)表示任意参数，方法名前的..按.处理
+ */
+public class AspectJExpressionPointcut {
+
+    private static final String[] MODIFIER_NAMES = {"public", "protected", "private", "static", "final",
+            "synchronized", "native", "abstract"};
+
+    private static final int[] MODIFIERS = {Modifier.PUBLIC, Modifier.PROTECTED, Modifier.PRIVATE, Modifier.STATIC,
+            Modifier.FINAL, Modifier.SYNCHRONIZED, Modifier.NATIVE, Modifier.ABSTRACT};
+
+    /**切点表达式*/
+    private final String expression;
+
+    /**方法必须有的修饰符*/
+    private int requiredModifiers;
+
+    /**方法不能有的修饰符（!static）*/
+    private int forbiddenModifiers;
+
+    private TypePattern returnType;
+
+    private TypePattern declaringType;
+
+    private String methodName;
+
+    /**参数类型，null表示..；整个为null表示任意参数*/
+    private TypePattern[] parameterTypes;
+
+    /**参数列表中是否有..*/
+    private boolean parameterWildcard;
+
+    public AspectJExpressionPointcut(String expression) {
+        this.expression = expression;
+        parse(expression.trim());
+    }
+
+    private void parse(String expr) {
+        if (expr.startsWith("execution(") && expr.endsWith(")")) {
+            expr = expr.substring("execution(".length(), expr.length() - 1).trim();
+        }
+        int paramsStart = expr.indexOf('(');
+        int paramsEnd = paramsStart < 0 ? -1 : expr.indexOf(')', paramsStart);
+        if (paramsEnd < 0) {
+            throw invalid("missing parameter list");
+        }
+
+        //修饰符、返回类型、声明类型.方法名
+        String[] tokens = expr.substring(0, paramsStart).trim().split("\\s+");
+        if (tokens.length < 2) {
+            throw invalid("expected return type and method name");
+        }
+        for (int i = 0; i < tokens.length - 2; i++) {
+            parseModifier(tokens[i]);
+        }
+        this.returnType = new TypePattern(tokens[tokens.length - 2]);
+
+        String name = tokens[tokens.length - 1];
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot < 0) {
+            this.declaringType = TypePattern.ANY;
+            this.methodName = name;
+        } else {
+            String typePattern = name.substring(0, lastDot);
+            //旧写法Service..*中方法名前的..
+            if (typePattern.endsWith(".")) {
+                typePattern = typePattern.substring(0, typePattern.length() - 1);
+            }
+            this.declaringType = new TypePattern(typePattern);
+            this.methodName = name.substring(lastDot + 1);
+        }
+        if (this.methodName.isEmpty()) {
+            throw invalid("missing method name");
+        }
+
+        this.parameterTypes = parseParameters(expr.substring(paramsStart + 1, paramsEnd).trim());
+    }
+
+    private void parseModifier(String token) {
+        boolean negated = token.startsWith("!");
+        String name = negated ? token.substring(1) : token;
+        for (int i = 0; i < MODIFIER_NAMES.length; i++) {
+            if (MODIFIER_NAMES[i].equals(name)) {
+                if (negated) {
+                    this.forbiddenModifiers |= MODIFIERS[i];
+                } else {
+                    this.requiredModifiers |= MODIFIERS[i];
+                }
+                return;
+            }
+        }
+        throw invalid("unknown modifier " + token);
+    }
+
+    private TypePattern[] parseParameters(String params) {
+        if ("..".equals(params) || ".*".equals(params)) {
+            return null;
+        }
+        if (params.isEmpty()) {
+            return new TypePattern[0];
+        }
+        String[] tokens = params.split(",");
+        TypePattern[] types = new TypePattern[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i].trim();
+            if (token.isEmpty()) {
+                throw invalid("empty parameter type");
+            }
+            if ("..".equals(token)) {
+                this.parameterWildcard = true;
+            } else {
+                types[i] = new TypePattern(token);
+            }
+        }
+        return types;
+    }
+
+    private IllegalArgumentException invalid(String reason) {
+        return new IllegalArgumentException("Invalid pointcut expression \"" + this.expression + "\": " + reason);
+    }
+
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * 判断一个类是否需要被代理
+     */
+    public boolean matches(Class<?> targetClass) {
+        return this.declaringType.matches(targetClass);
+    }
+
+    /**
+     * 判断一个方法是否需要被拦截，只比较修饰符、类型和方法名，不拼接方法签名
+     */
+    public boolean matches(Method method) {
+        int modifiers = method.getModifiers();
+        if ((modifiers & this.requiredModifiers) != this.requiredModifiers
+                || (modifiers & this.forbiddenModifiers) != 0) {
+            return false;
+        }
+        if (!TypePattern.match(this.methodName, 0, method.getName(), 0)) {
+            return false;
+        }
+        if (!this.declaringType.matches(method.getDeclaringClass()) || !this.returnType.matches(method.getReturnType())) {
+            return false;
+        }
+        if (this.parameterTypes == null) {
+            return true;
+        }
+        //没有..时参数个数必须一致，先比较个数，不用复制参数类型数组
+        if (!this.parameterWildcard && this.parameterTypes.length != method.getParameterCount()) {
+            return false;
+        }
+        return matchParameters(method.getParameterTypes(), 0, 0);
+    }
+
+    private boolean matchParameters(Class<?>[] types, int pi, int ti) {
+        while (pi < this.parameterTypes.length) {
+            TypePattern pattern = this.parameterTypes[pi];
+            if (pattern == null) {
+                //..匹配任意个参数
+                for (int k = ti; k <= types.length; k++) {
+                    if (matchParameters(types, pi + 1, k)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ti == types.length || !pattern.matches(types[ti])) {
+                return false;
+            }
+            pi++;
+            ti++;
+        }
+        return ti == types.length;
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+}
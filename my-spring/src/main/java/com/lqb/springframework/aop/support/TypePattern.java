@@ -0,0 +1,107 @@
+package com.lqb.springframework.aop.support;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 切点表达式中的类型模式，如 java.lang.String、*Service、demo.service..*Service
+ * *匹配不含.的任意字符，..匹配任意层包，单独的*（或者旧写法的.*）匹配任意类型
+ * 匹配结果按Class缓存，同一个类型只匹配一次
+ */
+class TypePattern {
+
+    /**匹配任意类型*/
+    static final TypePattern ANY = new TypePattern("*");
+
+    private final String pattern;
+
+    private final boolean any;
+
+    /**不含.的模式对java.lang下的类也按简单类名匹配，如String*/
+    private final boolean simpleName;
+
+    private final Map<Class<?>, Boolean> matchCache = new ConcurrentHashMap<>();
+
+    TypePattern(String pattern) {
+        this.pattern = pattern;
+        this.any = "*".equals(pattern) || ".*".equals(pattern);
+        this.simpleName = pattern.indexOf('.') < 0;
+    }
+
+    boolean isAny() {
+        return this.any;
+    }
+
+    boolean matches(Class<?> type) {
+        if (this.any) {
+            return true;
+        }
+        Boolean matched = this.matchCache.get(type);
+        if (matched == null) {
+            matched = doMatch(type);
+            this.matchCache.put(type, matched);
+        }
+        return matched;
+    }
+
+    private boolean doMatch(Class<?> type) {
+        String typeName = typeName(type);
+        if (match(this.pattern, 0, typeName, 0)) {
+            return true;
+        }
+        if (this.simpleName && typeName.startsWith("java.lang.") && typeName.indexOf('.', 10) < 0) {
+            return match(this.pattern, 0, typeName, 10);
+        }
+        return false;
+    }
+
+    /**
+     * 和Method.toString()中的写法一致，数组写成String[]
+     */
+    private static String typeName(Class<?> type) {
+        if (type.isArray()) {
+            return typeName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+
+    /**
+     * 通配符匹配，pattern从pi开始，name从ni开始
+     */
+    static boolean match(String pattern, int pi, String name, int ni) {
+        while (pi < pattern.length()) {
+            char c = pattern.charAt(pi);
+            if (c == '*') {
+                //*匹配不含.的任意字符
+                for (int k = ni; ; k++) {
+                    if (match(pattern, pi + 1, name, k)) {
+                        return true;
+                    }
+                    if (k == name.length() || name.charAt(k) == '.') {
+                        return false;
+                    }
+                }
+            }
+            if (c == '.' && pi + 1 < pattern.length() && pattern.charAt(pi + 1) == '.') {
+                //..匹配一个.加上任意层包名
+                for (int k = ni; k < name.length(); k++) {
+                    if (name.charAt(k) == '.' && match(pattern, pi + 2, name, k + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ni == name.length() || name.charAt(ni) != c) {
+                return false;
+            }
+            pi++;
+            ni++;
+        }
+        return ni == name.length();
+    }
+
+    @Override
+    public String toString() {
+        return this.pattern;
+    }
+}
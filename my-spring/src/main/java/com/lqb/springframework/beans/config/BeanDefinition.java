@@ -7,6 +7,11 @@ import lombok.Setter;
 @Getter
 public class BeanDefinition {
 
+    public static final String SCOPE_SINGLETON = "singleton";
+
+    public static final String SCOPE_PROTOTYPE = "prototype";
+
+    public static final String SCOPE_REQUEST = "request";
 
     private String beanClassName;
 
@@ -15,7 +20,28 @@ public class BeanDefinition {
 
     private String factoryBeanName;
 
+    /**同一个类型有多个bean时是否优先选择*/
+    private boolean primary = false;
+
+    /**作用域，默认单例*/
+    private String scope = SCOPE_SINGLETON;
+
+    /**prototype对象池的大小，0表示不使用对象池*/
+    private int poolSize = 0;
+
     public BeanDefinition() {
     }
 
+    public boolean isSingleton() {
+        return SCOPE_SINGLETON.equals(scope);
+    }
+
+    public boolean isPrototype() {
+        return SCOPE_PROTOTYPE.equals(scope);
+    }
+
+    public boolean isRequestScoped() {
+        return SCOPE_REQUEST.equals(scope);
+    }
+
 }
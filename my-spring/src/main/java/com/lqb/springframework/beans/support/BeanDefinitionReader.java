@@ -1,16 +1,32 @@
 package com.lqb.springframework.beans.support;
 
 import com.lqb.springframework.annotation.Component;
+import com.lqb.springframework.annotation.Lazy;
+import com.lqb.springframework.annotation.Primary;
+import com.lqb.springframework.annotation.Scope;
 import com.lqb.springframework.beans.config.BeanDefinition;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.net.JarURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 public class BeanDefinitionReader {
 
@@ -20,9 +36,30 @@ public class BeanDefinitionReader {
     //配置文件中指定需要扫描的包名
     private final String SCAN_PACKAGE = "scanPackage";
 
+    //配置文件中指定是否并行扫描
+    private final String SCAN_PARALLEL = "scanParallel";
+
+    //配置文件中指定是否使用编译期生成的bean索引，默认存在索引就使用
+    private final String COMPONENT_INDEX = "componentIndex";
+
     /**保存了所有Bean的className*/
     private List<String> registyBeanClasses = new ArrayList<>();
 
+    /**是否并行扫描和加载BeanDefinition*/
+    private boolean parallel;
+
+    /**是否已经扫描过*/
+    private boolean scanned;
+
+    /**编译期生成的bean索引，没有时为null*/
+    private ComponentIndex componentIndex;
+
+    /**是否已经读取过bean索引*/
+    private boolean componentIndexLoaded;
+
+    /**直接读取class文件判断是否是bean*/
+    private final ClassMetadataReader metadataReader = new ClassMetadataReader(this.getClass().getClassLoader());
+
     public BeanDefinitionReader(String... locations) {
         try(
                 //1.定位，通过URL定位找到配置文件，然后转换为文件流
@@ -35,64 +72,284 @@ public class BeanDefinitionReader {
             e.printStackTrace();
         }
 
-        //3.扫描，扫描资源文件(class)，并保存到集合中
-        doScanner(config.getProperty(SCAN_PACKAGE));
+        this.parallel = Boolean.parseBoolean(config.getProperty(SCAN_PARALLEL));
+    }
+
+    /**
+     * 扫描，扫描资源文件(class)，并保存到集合中，只执行一次
+     * 在加载BeanDefinition前执行，容器从启动快照恢复时不需要扫描
+     */
+    public void scan() {
+        if (this.scanned) {
+            return;
+        }
+        this.scanned = true;
+
+        //扫描包所在的模块编译期生成了bean索引，并且索引中有扫描包下的bean的话直接使用索引，不再扫描
+        long start = System.currentTimeMillis();
+        try {
+            if (hasComponentIndex()) {
+                return;
+            }
+            doScanner(config.getProperty(SCAN_PACKAGE));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("Scanned " + registyBeanClasses.size() + " classes in "
+                + (System.currentTimeMillis() - start) + "ms" + (this.parallel ? " (parallel)" : ""));
+    }
+
+    /**
+     * 是否使用编译期生成的bean索引代替扫描，索引只读取一次
+     */
+    public boolean hasComponentIndex() throws IOException {
+        if (!this.componentIndexLoaded) {
+            this.componentIndexLoaded = true;
+            String scanPackage = config.getProperty(SCAN_PACKAGE);
+            if (!"false".equalsIgnoreCase(config.getProperty(COMPONENT_INDEX))) {
+                this.componentIndex = ComponentIndex.load(this.getClass().getClassLoader(), scanPackage);
+            }
+            if (this.componentIndex != null && this.componentIndex.getCandidates(scanPackage).isEmpty()) {
+                this.componentIndex = null;
+            }
+        }
+        return this.componentIndex != null;
     }
 
     /**
-     * 扫描资源文件的递归方法
+     * 扫描包所在的每一个classpath位置，目录和jar包（包括fat jar中嵌套的jar）都支持
      */
-    private void doScanner(String scanPackage) {
-        URL url = this.getClass().getClassLoader().getResource(scanPackage.replaceAll("\\.", "/"));
-        File classPath = new File(url.getFile());
-        for (File file : classPath.listFiles()) {
+    private void doScanner(String scanPackage) throws IOException {
+        Set<String> classNames = new LinkedHashSet<>();
+        Enumeration<URL> urls = this.getClass().getClassLoader().getResources(scanPackage.replace('.', '/'));
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            if ("file".equals(url.getProtocol())) {
+                File classPath = new File(url.getFile());
+                if (this.parallel) {
+                    classNames.addAll(ForkJoinPool.commonPool().invoke(new ScanTask(scanPackage, classPath)));
+                } else {
+                    doScanner(scanPackage, classPath, classNames);
+                }
+            } else {
+                URLConnection connection = url.openConnection();
+                if (connection instanceof JarURLConnection) {
+                    doScannerJar(scanPackage, (JarURLConnection) connection, classNames);
+                }
+            }
+        }
+        registyBeanClasses.addAll(classNames);
+    }
+
+    /**
+     * 扫描目录的递归方法
+     */
+    private void doScanner(String scanPackage, File classPath, Collection<String> classNames) {
+        for (File file : listClassPath(classPath)) {
             if (file.isDirectory()) {
-                doScanner(scanPackage + "." + file.getName());
+                doScanner(scanPackage + "." + file.getName(), file, classNames);
             } else {
-                if (!file.getName().endsWith(".class")) {
-                    continue;
+                classNames.add(toClassName(scanPackage, file));
+            }
+        }
+    }
+
+    /**
+     * 直接遍历jar包中的条目，不需要解压，按前缀过滤出包下的class
+     */
+    private void doScannerJar(String scanPackage, JarURLConnection connection, Collection<String> classNames) throws IOException {
+        //不使用缓存，否则关闭的是类加载器也在用的JarFile
+        connection.setUseCaches(false);
+        //entryName是包在jar中的路径，fat jar中可能带有BOOT-INF/classes/这样的前缀
+        String prefix = connection.getEntryName() + "/";
+        List<String> entryNames = new ArrayList<>();
+        try (JarFile jarFile = connection.getJarFile()) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(prefix) && name.endsWith(".class")) {
+                    entryNames.add(name.substring(prefix.length()));
                 }
-                String className = (scanPackage + "." + file.getName().replace(".class", ""));
-                registyBeanClasses.add(className);
             }
         }
+
+        //和目录扫描的顺序保持一致：同一层按名字排序，目录名排在同名的文件前面
+        //把/换成最小的字符\0后按字符串排序即可做到
+        entryNames.sort(Comparator.comparing(name -> name.replace('/', '\0')));
+        for (String name : entryNames) {
+            classNames.add(scanPackage + "." + name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+        }
+    }
+
+    /**
+     * 列出目录下的子目录和class文件，按文件名排序，保证每次扫描得到的顺序一致
+     */
+    private static File[] listClassPath(File classPath) {
+        File[] files = classPath.listFiles(file -> file.isDirectory() || file.getName().endsWith(".class"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+
+    private static String toClassName(String scanPackage, File classFile) {
+        return scanPackage + "." + classFile.getName().replace(".class", "");
+    }
+
+    /**
+     * 并行扫描目录，每个子目录一个任务，结果按和doScanner相同的顺序合并
+     */
+    private static class ScanTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String scanPackage;
+
+        private final File classPath;
+
+        ScanTask(String scanPackage, File classPath) {
+            this.scanPackage = scanPackage;
+            this.classPath = classPath;
+        }
+
+        @Override
+        protected List<String> compute() {
+            File[] files = listClassPath(classPath);
+            //先把子目录的任务都fork出去，再按顺序合并
+            Object[] parts = new Object[files.length];
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].isDirectory()) {
+                    ScanTask task = new ScanTask(scanPackage + "." + files[i].getName(), files[i]);
+                    task.fork();
+                    parts[i] = task;
+                } else {
+                    parts[i] = toClassName(scanPackage, files[i]);
+                }
+            }
+
+            List<String> result = new ArrayList<>();
+            for (Object part : parts) {
+                if (part instanceof ScanTask) {
+                    result.addAll(((ScanTask) part).join());
+                } else {
+                    result.add((String) part);
+                }
+            }
+            return result;
+        }
     }
 
     /**
      * 把配置文件中扫描到的所有的配置信息转换为BeanDefinition对象
      */
     public List<BeanDefinition> loadBeanDefinitions() {
+        scan();
+
+        long start = System.currentTimeMillis();
         List<BeanDefinition> result = new ArrayList<>();
-        try {
+        if (this.componentIndex != null) {
+            //索引中已经是bean的信息了，不需要加载和解析类
+            for (ComponentIndex.Entry entry : this.componentIndex.getCandidates(config.getProperty(SCAN_PACKAGE))) {
+                BeanDefinition beanDefinition = doCreateBeanDefinition(entry.getBeanName(), entry.getClassName());
+                beanDefinition.setLazyInit(entry.isLazyInit());
+                beanDefinition.setPrimary(entry.isPrimary());
+                beanDefinition.setScope(entry.getScope());
+                beanDefinition.setPoolSize(entry.getPoolSize());
+                result.add(beanDefinition);
+            }
+        } else if (this.parallel) {
+            //并行处理每个类，parallelStream的collect会保持原来的顺序
+            List<List<BeanDefinition>> parts = registyBeanClasses.parallelStream()
+                    .map(this::doLoadBeanDefinitions)
+                    .collect(Collectors.toList());
+            for (List<BeanDefinition> part : parts) {
+                result.addAll(part);
+            }
+        } else {
             for (String className : registyBeanClasses) {
-                Class<?> beanClass = Class.forName(className);
-                //如果是一个接口，是不能实例化的，不需要封装
-                if (beanClass.isInterface()) {
-                    continue;
-                }
+                result.addAll(doLoadBeanDefinitions(className));
+            }
+        }
+        System.out.println("Loaded " + result.size() + " bean definitions in "
+                + (System.currentTimeMillis() - start) + "ms"
+                + (this.componentIndex != null ? " (index)" : this.parallel ? " (parallel)" : ""));
+        return result;
+    }
 
-                Annotation[] annotations = beanClass.getAnnotations();
-                if (annotations.length == 0) {
-                    continue;
-                }
+    /**
+     * 把一个类转换为BeanDefinition，不是bean的返回空集合
+     * 优先直接解析class文件判断，不是bean的类完全不需要加载，解析失败时再退回到反射
+     */
+    private List<BeanDefinition> doLoadBeanDefinitions(String className) {
+        try {
+            ClassMetadata metadata = this.metadataReader.read(className);
+            if (metadata != null) {
+                return doLoadBeanDefinitions(metadata);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return doLoadBeanDefinitionsByReflection(className);
+    }
+
+    private List<BeanDefinition> doLoadBeanDefinitions(ClassMetadata metadata) {
+        List<BeanDefinition> result = new ArrayList<>();
+        //接口以及没有被@Component标注的注解标注的类都不是bean
+        if (!this.metadataReader.isComponent(metadata)) {
+            return result;
+        }
+
+        //接口和实现类之间的关系由容器按类型建立索引，这里只封装类本身
+        BeanDefinition beanDefinition = doCreateBeanDefinition(toLowerFirstCase(metadata.getSimpleName()), metadata.getClassName());
+        beanDefinition.setLazyInit(metadata.hasAnnotation(Lazy.class.getName()));
+        beanDefinition.setPrimary(metadata.hasAnnotation(Primary.class.getName()));
+        //@Scope中没有写出来的属性使用默认值
+        Object scope = metadata.getAnnotationAttribute(Scope.class.getName(), "value");
+        Object poolSize = metadata.getAnnotationAttribute(Scope.class.getName(), "poolSize");
+        if (scope != null) {
+            beanDefinition.setScope((String) scope);
+        }
+        if (poolSize != null) {
+            beanDefinition.setPoolSize((Integer) poolSize);
+        }
+        result.add(beanDefinition);
+        return result;
+    }
+
+    private List<BeanDefinition> doLoadBeanDefinitionsByReflection(String className) {
+        List<BeanDefinition> result = new ArrayList<>();
+        try {
+            //只加载不初始化，不是bean的类不需要执行静态代码块，并行加载时也不会互相等待类初始化
+            Class<?> beanClass = Class.forName(className, false, this.getClass().getClassLoader());
+            //如果是一个接口，是不能实例化的，不需要封装
+            if (beanClass.isInterface()) {
+                return result;
+            }
+
+            Annotation[] annotations = beanClass.getAnnotations();
+            if (annotations.length == 0) {
+                return result;
+            }
 
-                for (Annotation annotation : annotations) {
-                    Class<? extends Annotation> annotationType = annotation.annotationType();
-                    //只考虑被@Component注解的class
-                    if (annotationType.isAnnotationPresent(Component.class)) {
-                        //beanName有三种情况:
-                        //1、默认是类名首字母小写
-                        //2、自定义名字（这里暂不考虑）
-                        //3、接口注入
-                        result.add(doCreateBeanDefinition(toLowerFirstCase(beanClass.getSimpleName()), beanClass.getName()));
-
-                        Class<?>[] interfaces = beanClass.getInterfaces();
-                        for (Class<?> i : interfaces) {
-                            //接口和实现类之间的关系也需要封装
-                            result.add(doCreateBeanDefinition(i.getName(), beanClass.getName()));
-                        }
-                        break;
+            for (Annotation annotation : annotations) {
+                Class<? extends Annotation> annotationType = annotation.annotationType();
+                //只考虑被@Component注解的class
+                if (annotationType.isAnnotationPresent(Component.class)) {
+                    //beanName有三种情况:
+                    //1、默认是类名首字母小写
+                    //2、自定义名字（这里暂不考虑）
+                    //3、接口注入，由容器按类型建立索引，这里不需要封装
+                    BeanDefinition beanDefinition = doCreateBeanDefinition(toLowerFirstCase(beanClass.getSimpleName()), beanClass.getName());
+                    beanDefinition.setLazyInit(beanClass.isAnnotationPresent(Lazy.class));
+                    beanDefinition.setPrimary(beanClass.isAnnotationPresent(Primary.class));
+                    Scope scope = beanClass.getAnnotation(Scope.class);
+                    if (scope != null) {
+                        beanDefinition.setScope(scope.value());
+                        beanDefinition.setPoolSize(scope.poolSize());
                     }
+                    result.add(beanDefinition);
+                    break;
                 }
             }
         } catch (Exception e) {
@@ -112,9 +369,9 @@ public class BeanDefinitionReader {
     }
 
     /**
-     * 将单词首字母变为小写
+     * 将单词首字母变为小写，作为默认的beanName，扫描和编译期生成bean索引（ComponentIndexProcessor）共用这一个规则
      */
-    private String toLowerFirstCase(String simpleName) {
+    public static String toLowerFirstCase(String simpleName) {
         char [] chars = simpleName.toCharArray();
         chars[0] += 32;
         return String.valueOf(chars);
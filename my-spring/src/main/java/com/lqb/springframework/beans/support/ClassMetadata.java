@@ -0,0 +1,75 @@
+package com.lqb.springframework.beans.support;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从class文件中直接读出来的类信息，不需要加载类
+ */
+@Getter
+public class ClassMetadata {
+
+    private static final int ACC_INTERFACE = 0x0200;
+
+    private static final int ACC_ANNOTATION = 0x2000;
+
+    /**全类名，如com.lqb.demo.HelloService*/
+    private final String className;
+
+    /**访问标志*/
+    private final int accessFlags;
+
+    /**父类的全类名，Object的父类为null*/
+    private final String superClassName;
+
+    /**直接实现的接口的全类名*/
+    private final List<String> interfaceNames;
+
+    /**运行时可见的注解的全类名*/
+    private final List<String> annotationTypes;
+
+    /**注解中显式写出的String和int类型的属性值，key为注解的全类名*/
+    private final Map<String, Map<String, Object>> annotationAttributes;
+
+    public ClassMetadata(String className, int accessFlags, String superClassName,
+                         List<String> interfaceNames, List<String> annotationTypes,
+                         Map<String, Map<String, Object>> annotationAttributes) {
+        this.className = className;
+        this.accessFlags = accessFlags;
+        this.superClassName = superClassName;
+        this.interfaceNames = interfaceNames;
+        this.annotationTypes = annotationTypes;
+        this.annotationAttributes = annotationAttributes;
+    }
+
+    public boolean isInterface() {
+        return (accessFlags & ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAnnotation() {
+        return (accessFlags & ACC_ANNOTATION) != 0;
+    }
+
+    public boolean hasAnnotation(String annotationType) {
+        return annotationTypes.contains(annotationType);
+    }
+
+    /**
+     * 获取注解的属性值，没有这个注解或者属性使用的是默认值时返回null
+     */
+    public Object getAnnotationAttribute(String annotationType, String name) {
+        Map<String, Object> attributes = annotationAttributes.getOrDefault(annotationType, Collections.emptyMap());
+        return attributes.get(name);
+    }
+
+    /**
+     * 和Class.getSimpleName()一致（匿名类和局部类除外）
+     */
+    public String getSimpleName() {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        return simpleName.substring(simpleName.lastIndexOf('$') + 1);
+    }
+}
@@ -0,0 +1,295 @@
+package com.lqb.springframework.beans.support;
+
+import com.lqb.springframework.annotation.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 直接解析class文件的字节，读取类名、父类、接口和注解，判断是不是bean时不需要Class.forName
+ * 只解析常量池和类上的RuntimeVisibleAnnotations属性，字段和方法直接跳过
+ */
+public class ClassMetadataReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private static final String COMPONENT = Component.class.getName();
+
+    private final ClassLoader classLoader;
+
+    /**注解类型是否被@Component标注，key为注解的全类名*/
+    private final Map<String, Boolean> componentAnnotationCache = new ConcurrentHashMap<>();
+
+    public ClassMetadataReader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * 通过类加载器找到class文件并解析，找不到返回null
+     */
+    public ClassMetadata read(String className) throws IOException {
+        try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (is == null) {
+                return null;
+            }
+            return read(is);
+        }
+    }
+
+    public ClassMetadata read(InputStream is) throws IOException {
+        return read(ByteBuffer.wrap(readBytes(is)));
+    }
+
+    public ClassMetadata read(ByteBuffer buffer) throws IOException {
+        try {
+            return parse(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed class file", e);
+        }
+    }
+
+    /**
+     * 和原来Class.forName的判断保持一致：类上有注解，且注解本身被@Component标注
+     */
+    public boolean isComponent(ClassMetadata metadata) {
+        if (metadata.isInterface()) {
+            return false;
+        }
+        for (String annotationType : metadata.getAnnotationTypes()) {
+            if (isComponentAnnotation(annotationType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isComponentAnnotation(String annotationType) {
+        Boolean cached = componentAnnotationCache.get(annotationType);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = false;
+        try {
+            ClassMetadata metadata = read(annotationType);
+            result = metadata != null && metadata.getAnnotationTypes().contains(COMPONENT);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        componentAnnotationCache.put(annotationType, result);
+        return result;
+    }
+
+    private ClassMetadata parse(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        //minor_version、major_version
+        buffer.getShort();
+        buffer.getShort();
+
+        //常量池，只记录每一项的起始位置，用到时再解析
+        int constantPoolCount = buffer.getShort() & 0xFFFF;
+        int[] offsets = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            offsets[i] = buffer.position();
+            int tag = buffer.get();
+            switch (tag) {
+                case 1:
+                    //Utf8
+                    skip(buffer, buffer.getShort() & 0xFFFF);
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    //Class、String、MethodType、Module、Package
+                    skip(buffer, 2);
+                    break;
+                case 15:
+                    //MethodHandle
+                    skip(buffer, 3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    //Integer、Float、各种ref、NameAndType、Dynamic、InvokeDynamic
+                    skip(buffer, 4);
+                    break;
+                case 5:
+                case 6:
+                    //Long、Double占两个位置
+                    skip(buffer, 8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        int accessFlags = buffer.getShort() & 0xFFFF;
+        String className = classNameAt(buffer, offsets, buffer.getShort() & 0xFFFF);
+        int superIndex = buffer.getShort() & 0xFFFF;
+        String superClassName = superIndex == 0 ? null : classNameAt(buffer, offsets, superIndex);
+
+        int interfacesCount = buffer.getShort() & 0xFFFF;
+        String[] interfaceNames = new String[interfacesCount];
+        for (int i = 0; i < interfacesCount; i++) {
+            interfaceNames[i] = classNameAt(buffer, offsets, buffer.getShort() & 0xFFFF);
+        }
+
+        //跳过字段和方法
+        skipMembers(buffer);
+        skipMembers(buffer);
+
+        List<String> annotationTypes = Collections.emptyList();
+        Map<String, Map<String, Object>> annotationAttributes = Collections.emptyMap();
+        int attributesCount = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = utf8At(buffer, offsets, buffer.getShort() & 0xFFFF);
+            int length = buffer.getInt();
+            if (!RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+                skip(buffer, length);
+                continue;
+            }
+            int numAnnotations = buffer.getShort() & 0xFFFF;
+            annotationTypes = new ArrayList<>(numAnnotations);
+            annotationAttributes = new HashMap<>();
+            for (int j = 0; j < numAnnotations; j++) {
+                Map<String, Object> attributes = new HashMap<>();
+                String annotationType = readAnnotation(buffer, offsets, attributes);
+                annotationTypes.add(annotationType);
+                annotationAttributes.put(annotationType, attributes);
+            }
+        }
+
+        return new ClassMetadata(className, accessFlags, superClassName,
+                Arrays.asList(interfaceNames), annotationTypes, annotationAttributes);
+    }
+
+    private void skipMembers(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            //access_flags、name_index、descriptor_index
+            skip(buffer, 6);
+            int attributesCount = buffer.getShort() & 0xFFFF;
+            for (int j = 0; j < attributesCount; j++) {
+                skip(buffer, 2);
+                skip(buffer, buffer.getInt());
+            }
+        }
+    }
+
+    /**
+     * 读取一个注解，返回注解的全类名
+     * attributes不为null时记录String和int类型的属性值（如@Scope的value和poolSize），其他属性值直接跳过
+     * 注解中没有写出来的属性（使用默认值的）不会出现在class文件中
+     */
+    private String readAnnotation(ByteBuffer buffer, int[] offsets, Map<String, Object> attributes) {
+        String descriptor = utf8At(buffer, offsets, buffer.getShort() & 0xFFFF);
+        int numPairs = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < numPairs; i++) {
+            String name = utf8At(buffer, offsets, buffer.getShort() & 0xFFFF);
+            if (attributes == null) {
+                skipElementValue(buffer, offsets);
+                continue;
+            }
+            int tag = buffer.get(buffer.position());
+            if (tag == 's') {
+                buffer.get();
+                attributes.put(name, utf8At(buffer, offsets, buffer.getShort() & 0xFFFF));
+            } else if (tag == 'I') {
+                buffer.get();
+                attributes.put(name, buffer.getInt(offsets[buffer.getShort() & 0xFFFF] + 1));
+            } else {
+                skipElementValue(buffer, offsets);
+            }
+        }
+        //Lcom/lqb/Xxx; -> com.lqb.Xxx
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private void skipElementValue(ByteBuffer buffer, int[] offsets) {
+        int tag = buffer.get();
+        switch (tag) {
+            case 'e':
+                skip(buffer, 4);
+                break;
+            case '@':
+                readAnnotation(buffer, offsets, null);
+                break;
+            case '[':
+                int numValues = buffer.getShort() & 0xFFFF;
+                for (int i = 0; i < numValues; i++) {
+                    skipElementValue(buffer, offsets);
+                }
+                break;
+            default:
+                //基本类型、String、Class
+                skip(buffer, 2);
+        }
+    }
+
+    private String classNameAt(ByteBuffer buffer, int[] offsets, int index) {
+        int nameIndex = buffer.getShort(offsets[index] + 1) & 0xFFFF;
+        return utf8At(buffer, offsets, nameIndex).replace('/', '.');
+    }
+
+    /**
+     * 解析常量池中的Utf8项（modified UTF-8）
+     */
+    private String utf8At(ByteBuffer buffer, int[] offsets, int index) {
+        int offset = offsets[index] + 1;
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int pos = offset + 2;
+        int end = pos + length;
+        char[] chars = new char[length];
+        int count = 0;
+        while (pos < end) {
+            int b = buffer.get(pos++) & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (buffer.get(pos++) & 0x3F));
+            } else {
+                chars[count++] = (char) (((b & 0x0F) << 12)
+                        | ((buffer.get(pos++) & 0x3F) << 6)
+                        | (buffer.get(pos++) & 0x3F));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    private static byte[] readBytes(InputStream is) throws IOException {
+        byte[] bytes = new byte[Math.max(is.available(), 1024)];
+        int length = 0;
+        int n;
+        while ((n = is.read(bytes, length, bytes.length - length)) != -1) {
+            length += n;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+}
@@ -0,0 +1,186 @@
+package com.lqb.springframework.beans.support;
+
+import com.lqb.springframework.beans.config.BeanDefinition;
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译期生成的bean索引，由ComponentIndexProcessor写入，启动时直接读取，不需要扫描classpath
+ * 每行一个bean：全类名=beanName;lazy;primary;scope=prototype;poolSize=8
+ * 分号后面是可选的属性：lazy、primary表示类上有@Lazy、@Primary，scope和poolSize对应@Scope，不写时为singleton和0
+ */
+public class ComponentIndex {
+
+    /**索引文件在classpath中的位置*/
+    public static final String COMPONENTS_RESOURCE_LOCATION = "META-INF/my-spring.components";
+
+    private final List<Entry> entries;
+
+    private ComponentIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * 读取扫描包所在模块的索引文件
+     * 扫描包所在的每一个classpath位置（目录或者jar包）都必须有自己的索引，否则返回null，由调用方扫描classpath，
+     * 其他位置（如依赖的jar包）中的索引不读取，避免用别的模块的索引代替扫描，漏掉没有被索引的类
+     */
+    public static ComponentIndex load(ClassLoader classLoader, String basePackage) throws IOException {
+        String packagePath = basePackage.replace('.', '/');
+        Set<String> packageRoots = new LinkedHashSet<>();
+        Enumeration<URL> urls = classLoader.getResources(packagePath);
+        while (urls.hasMoreElements()) {
+            packageRoots.add(root(urls.nextElement(), packagePath));
+        }
+        if (packageRoots.isEmpty()) {
+            return null;
+        }
+
+        Map<String, URL> indexes = new HashMap<>();
+        urls = classLoader.getResources(COMPONENTS_RESOURCE_LOCATION);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            indexes.put(root(url, COMPONENTS_RESOURCE_LOCATION), url);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (String packageRoot : packageRoots) {
+            URL url = indexes.get(packageRoot);
+            if (url == null) {
+                return null;
+            }
+            try (InputStream is = url.openStream()) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    entries.add(Entry.parse(line));
+                }
+            }
+        }
+        return new ComponentIndex(entries);
+    }
+
+    /**
+     * 资源所在的classpath位置，如file:/app/classes/、jar:file:/app/lib/a.jar!/
+     */
+    private static String root(URL url, String resourcePath) {
+        String location = url.toExternalForm();
+        if (location.endsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        if (location.endsWith(resourcePath)) {
+            location = location.substring(0, location.length() - resourcePath.length());
+        }
+        return location;
+    }
+
+    /**
+     * 获取某个包（包括子包）下的bean
+     */
+    public List<Entry> getCandidates(String basePackage) {
+        String prefix = basePackage + ".";
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.getClassName().startsWith(prefix)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 索引中的一个bean
+     */
+    @Getter
+    public static class Entry {
+
+        private static final String LAZY = "lazy";
+
+        private static final String PRIMARY = "primary";
+
+        private static final String SCOPE = "scope=";
+
+        private static final String POOL_SIZE = "poolSize=";
+
+        private final String className;
+
+        private final String beanName;
+
+        /**类上是否有@Lazy*/
+        private final boolean lazyInit;
+
+        /**类上是否有@Primary*/
+        private final boolean primary;
+
+        /**@Scope指定的作用域*/
+        private final String scope;
+
+        /**@Scope指定的prototype对象池大小*/
+        private final int poolSize;
+
+        public Entry(String className, String beanName, boolean lazyInit, boolean primary, String scope, int poolSize) {
+            this.className = className;
+            this.beanName = beanName;
+            this.lazyInit = lazyInit;
+            this.primary = primary;
+            this.scope = scope;
+            this.poolSize = poolSize;
+        }
+
+        static Entry parse(String line) {
+            int eq = line.indexOf('=');
+            String[] parts = line.substring(eq + 1).split(";");
+            boolean lazyInit = false;
+            boolean primary = false;
+            String scope = BeanDefinition.SCOPE_SINGLETON;
+            int poolSize = 0;
+            for (int i = 1; i < parts.length; i++) {
+                String part = parts[i].trim();
+                if (LAZY.equals(part)) {
+                    lazyInit = true;
+                } else if (PRIMARY.equals(part)) {
+                    primary = true;
+                } else if (part.startsWith(SCOPE)) {
+                    scope = part.substring(SCOPE.length());
+                } else if (part.startsWith(POOL_SIZE)) {
+                    poolSize = Integer.parseInt(part.substring(POOL_SIZE.length()));
+                }
+            }
+            return new Entry(line.substring(0, eq), parts[0].trim(), lazyInit, primary, scope, poolSize);
+        }
+
+        String format() {
+            StringBuilder sb = new StringBuilder(className).append('=').append(beanName);
+            if (lazyInit) {
+                sb.append(';').append(LAZY);
+            }
+            if (primary) {
+                sb.append(';').append(PRIMARY);
+            }
+            if (!BeanDefinition.SCOPE_SINGLETON.equals(scope)) {
+                sb.append(';').append(SCOPE).append(scope);
+            }
+            if (poolSize > 0) {
+                sb.append(';').append(POOL_SIZE).append(poolSize);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.lqb.springframework.beans.support;
+
+import com.lqb.springframework.annotation.Component;
+import com.lqb.springframework.annotation.Lazy;
+import com.lqb.springframework.annotation.Primary;
+import com.lqb.springframework.annotation.Scope;
+import com.lqb.springframework.beans.config.BeanDefinition;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译期生成bean索引的注解处理器，通过META-INF/services自动注册
+ * 判断规则和BeanDefinitionReader扫描时一致：不是接口，且类上的某个注解被@Component标注，beanName的规则也共用
+ * 增量编译只会处理本次编译到的类，所以写入之前先读取输出目录中已有的索引合并：
+ * 本次编译到的类以本次的结果为准，其他类从编译器中重新读取，已经不存在或者不再是bean的去掉
+ * 已有的索引无法读取时写入空索引，启动时改为扫描classpath
+ */
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    /**key为排序用的路径，保证索引中的顺序和目录扫描的顺序一致*/
+    private final TreeMap<String, ComponentIndex.Entry> entries = new TreeMap<>();
+
+    /**本次编译到的类（包括不是bean的），已有索引中的这些类以本次的结果为准*/
+    private final Set<String> compiledClasses = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        if (roundEnv.processingOver()) {
+            mergeAndWriteIndex();
+        }
+        //不占用任何注解，其他处理器照常工作
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        compiledClasses.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        addEntry(type);
+        //内部类
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed);
+        }
+    }
+
+    private void addEntry(TypeElement type) {
+        if (!type.getKind().isInterface() && isComponent(type)) {
+            String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+            String beanName = BeanDefinitionReader.toLowerFirstCase(type.getSimpleName().toString());
+            entries.put(className.replace('.', '\0') + ".class", new ComponentIndex.Entry(className, beanName,
+                    isLazy(type), isPrimary(type), getScope(type), getPoolSize(type)));
+        }
+    }
+
+    private boolean isComponent(TypeElement type) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            Element annotationType = annotation.getAnnotationType().asElement();
+            for (AnnotationMirror meta : annotationType.getAnnotationMirrors()) {
+                TypeElement metaType = (TypeElement) meta.getAnnotationType().asElement();
+                if (metaType.getQualifiedName().contentEquals(Component.class.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isLazy(TypeElement type) {
+        return findAnnotation(type, Lazy.class.getName()) != null;
+    }
+
+    private boolean isPrimary(TypeElement type) {
+        return findAnnotation(type, Primary.class.getName()) != null;
+    }
+
+    private String getScope(TypeElement type) {
+        Object value = getAnnotationValue(findAnnotation(type, Scope.class.getName()), "value");
+        return value == null ? BeanDefinition.SCOPE_SINGLETON : (String) value;
+    }
+
+    private int getPoolSize(TypeElement type) {
+        Object value = getAnnotationValue(findAnnotation(type, Scope.class.getName()), "poolSize");
+        return value == null ? 0 : (Integer) value;
+    }
+
+    private AnnotationMirror findAnnotation(TypeElement type, String annotationName) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取注解中显式写出的属性值，没有写的（使用默认值）返回null
+     */
+    private Object getAnnotationValue(AnnotationMirror annotation, String name) {
+        if (annotation == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 合并输出目录中已有的索引再写入，没有已有索引并且本次也没有bean时不写
+     */
+    private void mergeAndWriteIndex() {
+        List<String> indexedClasses;
+        try {
+            indexedClasses = readExistingIndex();
+        } catch (IOException e) {
+            //不能保证索引完整，写入空索引，启动时扫描classpath
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to read existing "
+                    + ComponentIndex.COMPONENTS_RESOURCE_LOCATION + ", writing an empty index: " + e);
+            entries.clear();
+            writeIndex();
+            return;
+        }
+        if (indexedClasses == null && entries.isEmpty()) {
+            return;
+        }
+        if (indexedClasses != null) {
+            for (String className : indexedClasses) {
+                if (compiledClasses.contains(className)) {
+                    continue;
+                }
+                //没有重新编译的类从class文件中读取，已经删除的类找不到
+                TypeElement type = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+                if (type != null) {
+                    addEntry(type);
+                }
+            }
+        }
+        writeIndex();
+    }
+
+    /**
+     * 读取输出目录中已有的索引，只需要类名，没有时返回null
+     */
+    private List<String> readExistingIndex() throws IOException {
+        FileObject file;
+        InputStream is;
+        try {
+            file = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, "", ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+            is = file.openInputStream();
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            return null;
+        }
+        List<String> classNames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                if (eq <= 0) {
+                    throw new IOException("Malformed index entry: " + line);
+                }
+                classNames.add(line.substring(0, eq));
+            }
+        }
+        return classNames;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (ComponentIndex.Entry entry : entries.values()) {
+                    writer.write(entry.format());
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + ComponentIndex.COMPONENTS_RESOURCE_LOCATION + ": " + e);
+        }
+    }
+}
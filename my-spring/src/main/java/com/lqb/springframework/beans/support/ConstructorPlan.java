@@ -0,0 +1,110 @@
+package com.lqb.springframework.beans.support;
+
+import com.lqb.springframework.annotation.Autowired;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+
+/**
+ * 一个类的实例化方式，每个类只解析一次
+ * 构造器的选择规则：
+ * 1、被@Autowired标注的构造器（只能有一个）
+ * 2、只有一个构造器时直接使用
+ * 3、否则使用无参构造器
+ * 构造器的每个参数都按类型从容器中获取，有多个候选bean时参数名作为qualifier（需要编译时加-parameters）
+ */
+public class ConstructorPlan {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Constructor<?> constructor;
+
+    /**每个参数需要注入的bean名字，为参数类型的全类名*/
+    private final String[] beanNames;
+
+    /**每个参数的qualifier，编译时没有保留参数名的为null*/
+    private final String[] qualifiers;
+
+    /**预先绑定的构造器，类型为(Object[])Object*/
+    private final MethodHandle newInstance;
+
+    private ConstructorPlan(Constructor<?> constructor) throws IllegalAccessException {
+        this.constructor = constructor;
+
+        Parameter[] parameters = constructor.getParameters();
+        this.beanNames = new String[parameters.length];
+        this.qualifiers = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            this.beanNames[i] = parameters[i].getType().getName();
+            this.qualifiers[i] = parameters[i].isNamePresent() ? parameters[i].getName() : null;
+        }
+
+        //强制访问该构造器
+        constructor.setAccessible(true);
+        this.newInstance = LOOKUP.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, parameters.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    /**
+     * 选出一个类用来实例化的构造器
+     */
+    public static ConstructorPlan forClass(Class<?> clazz) throws Exception {
+        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
+        Constructor<?> candidate = null;
+        for (Constructor<?> constructor : constructors) {
+            if (!constructor.isAnnotationPresent(Autowired.class)) {
+                continue;
+            }
+            if (candidate != null) {
+                throw new Exception("Invalid autowire-marked constructor: " + constructor
+                        + ". Found another constructor with @Autowired annotation: " + candidate);
+            }
+            candidate = constructor;
+        }
+        if (candidate == null && constructors.length == 1) {
+            candidate = constructors[0];
+        }
+        if (candidate == null) {
+            try {
+                candidate = clazz.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new Exception("No default constructor found for " + clazz.getName(), e);
+            }
+        }
+        return new ConstructorPlan(candidate);
+    }
+
+    /**
+     * 直接使用已知的构造器，如从启动快照中恢复的构造器
+     */
+    public static ConstructorPlan forConstructor(Constructor<?> constructor) throws IllegalAccessException {
+        return new ConstructorPlan(constructor);
+    }
+
+    public Constructor<?> getConstructor() {
+        return this.constructor;
+    }
+
+    public String[] getBeanNames() {
+        return this.beanNames;
+    }
+
+    public String[] getQualifiers() {
+        return this.qualifiers;
+    }
+
+    public int getParameterCount() {
+        return this.beanNames.length;
+    }
+
+    /**
+     * 用准备好的参数调用构造器
+     */
+    public Object newInstance(Object[] args) throws Throwable {
+        return (Object) this.newInstance.invokeExact(args);
+    }
+}
@@ -0,0 +1,141 @@
+package com.lqb.springframework.beans.support;
+
+import com.lqb.springframework.annotation.Autowired;
+import com.lqb.springframework.annotation.Lazy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个类的注入信息，每个类只解析一次
+ * 包括父类中被@Autowired标注的成员变量，父类的先注入
+ */
+public class InjectionMetadata {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final InjectedField[] NO_FIELDS = new InjectedField[0];
+
+    private final Class<?> targetClass;
+
+    private final InjectedField[] injectedFields;
+
+    private InjectionMetadata(Class<?> targetClass, InjectedField[] injectedFields) {
+        this.targetClass = targetClass;
+        this.injectedFields = injectedFields;
+    }
+
+    /**
+     * 解析一个类的所有注入点，有成员变量无法注入（如final）时抛出异常，不会跳过
+     */
+    public static InjectionMetadata forClass(Class<?> clazz) {
+        //先收集父类，保证父类的成员变量先注入
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                //如果没有被Autowired注解的成员变量则直接跳过，静态变量不注入
+                if (!field.isAnnotationPresent(Autowired.class) || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                fields.add(field);
+            }
+        }
+        return forFields(clazz, fields);
+    }
+
+    /**
+     * 用已知的注入点创建，不再遍历类的成员变量，如从启动快照中恢复的注入点，父类的成员变量需要排在前面
+     */
+    public static InjectionMetadata forFields(Class<?> clazz, List<Field> fields) {
+        if (fields.isEmpty()) {
+            return new InjectionMetadata(clazz, NO_FIELDS);
+        }
+        InjectedField[] injectedFields = new InjectedField[fields.size()];
+        for (int i = 0; i < injectedFields.length; i++) {
+            Field field = fields.get(i);
+            try {
+                injectedFields[i] = new InjectedField(field);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot inject @Autowired field \"" + field.getName()
+                        + "\" of " + clazz.getName() + " (declared in " + field.getDeclaringClass().getName() + ")", e);
+            }
+        }
+        return new InjectionMetadata(clazz, injectedFields);
+    }
+
+    public Class<?> getTargetClass() {
+        return this.targetClass;
+    }
+
+    public InjectedField[] getInjectedFields() {
+        return this.injectedFields;
+    }
+
+    public boolean isEmpty() {
+        return this.injectedFields.length == 0;
+    }
+
+    /**
+     * 一个被@Autowired标注的成员变量
+     */
+    public static class InjectedField {
+
+        private final Field field;
+
+        /**需要注入的bean名字，@Autowired没有指定时为成员变量类型的全类名*/
+        private final String beanName;
+
+        /**是否注入延迟获取的代理，只有接口类型的成员变量才能代理*/
+        private final boolean lazy;
+
+        /**预先绑定的setter，类型为(Object, Object)void*/
+        private final MethodHandle setter;
+
+        InjectedField(Field field) throws IllegalAccessException {
+            this.field = field;
+
+            Autowired autowired = field.getAnnotation(Autowired.class);
+            //拿到需要注入的类名
+            String autowiredBeanName = autowired.value().trim();
+            if ("".equals(autowiredBeanName)) {
+                autowiredBeanName = field.getType().getName();
+            }
+            this.beanName = autowiredBeanName;
+            this.lazy = field.isAnnotationPresent(Lazy.class) && field.getType().isInterface();
+
+            //强制访问该成员变量
+            field.setAccessible(true);
+            this.setter = LOOKUP.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        public Field getField() {
+            return this.field;
+        }
+
+        public String getBeanName() {
+            return this.beanName;
+        }
+
+        public boolean isLazy() {
+            return this.lazy;
+        }
+
+        /**
+         * 将容器中的实例注入到成员变量中
+         */
+        public void inject(Object target, Object value) throws Throwable {
+            this.setter.invokeExact(target, value);
+        }
+    }
+}
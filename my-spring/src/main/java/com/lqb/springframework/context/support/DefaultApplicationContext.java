@@ -1,69 +1,561 @@
 package com.lqb.springframework.context.support;
 
-import com.lqb.springframework.annotation.Autowired;
 import com.lqb.springframework.aop.AopProxy;
 import com.lqb.springframework.aop.CglibAopProxy;
 import com.lqb.springframework.aop.JdkDynamicAopProxy;
 import com.lqb.springframework.aop.config.AopConfig;
 import com.lqb.springframework.aop.support.AdvisedSupport;
+import com.lqb.springframework.aop.support.AspectAdvisor;
 import com.lqb.springframework.beans.BeanWrapper;
 import com.lqb.springframework.beans.config.BeanDefinition;
 import com.lqb.springframework.beans.support.BeanDefinitionReader;
+import com.lqb.springframework.beans.support.ConstructorPlan;
+import com.lqb.springframework.beans.support.InjectionMetadata;
 import com.lqb.springframework.context.ApplicationContext;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 public class DefaultApplicationContext implements ApplicationContext {
 
+    //配置文件中指定是否多线程提前初始化bean
+    private static final String INSTANTIATE_PARALLEL = "instantiateParallel";
+
+    //配置文件中指定提前初始化bean的线程数，默认为CPU核数
+    private static final String INSTANTIATE_THREADS = "instantiateThreads";
+
+    //配置文件中指定启动快照的文件路径，不配置则不使用快照
+    private static final String STARTUP_SNAPSHOT = "startupSnapshot";
+
+    //配置文件中指定启动耗时报告（JSON）的文件路径，不配置则不输出
+    private static final String STARTUP_REPORT = "startupReport";
+
+    //配置文件中指定多个切面的名称，逗号分隔，每个切面的配置项以"名称."开头，如logAspect.pointCut
+    private static final String ASPECTS = "aspects";
+
     //配置文件路径
     private String configLocation;
 
     private BeanDefinitionReader reader;
 
+    /**编译好的切面，按优先级排序*/
+    private List<AspectAdvisor> aspectAdvisors = new ArrayList<>();
+
+    /**启动耗时统计*/
+    private final StartupProfiler startupProfiler = new StartupProfiler();
+
     /**保存factoryBean和BeanDefinition的对应关系*/
     private final Map<String, BeanDefinition> beanDefinitionMap = new ConcurrentHashMap<>();
 
     /**保存了真正实例化的对象*/
     private Map<String, BeanWrapper> factoryBeanInstanceCache = new ConcurrentHashMap<>();
 
+    /**提前暴露的单例，已经实例化（包括代理）但还没有完成注入，key为全类名*/
+    private final Map<String, Object> earlySingletonObjects = new ConcurrentHashMap<>();
+
+    /**实例化之后登记的提前暴露引用的工厂*/
+    private final Map<String, Supplier<Object>> singletonFactories = new ConcurrentHashMap<>();
+
+    /**当前线程正在创建的单例，只有同一个线程内的循环依赖才直接使用提前暴露的引用*/
+    private final ThreadLocal<Set<String>> singletonsCurrentlyInCreation = ThreadLocal.withInitial(HashSet::new);
+
+    /**每个单例的创建锁*/
+    private final Map<String, ReentrantLock> singletonLocks = new ConcurrentHashMap<>();
+
+    /**持有单例锁的线程，key为全类名，和singletonLockWaits一起用于发现跨线程的循环依赖，都由singletonLockOwners同步*/
+    private final Map<String, Thread> singletonLockOwners = new HashMap<>();
+
+    /**正在等待单例锁的线程 -> 等待的单例的全类名*/
+    private final Map<Thread, String> singletonLockWaits = new HashMap<>();
+
+    /**当前线程正在创建的非单例bean，用于发现无法解决的循环依赖*/
+    private final ThreadLocal<Set<String>> prototypesCurrentlyInCreation = ThreadLocal.withInitial(HashSet::new);
+
+    /**prototype对象池，key为全类名*/
+    private final Map<String, PrototypePool> prototypePools = new ConcurrentHashMap<>();
+
+    /**类型索引，类型的全类名 -> 可以按这个类型注入的beanName，注册BeanDefinition时建立*/
+    private final Map<String, String[]> beanNamesByType = new HashMap<>();
+
+    /**每个类实例化用的构造器，只解析一次*/
+    private final Map<Class<?>, ConstructorPlan> constructorPlanCache = new ConcurrentHashMap<>();
+
+    /**每个类的注入点，只解析一次*/
+    private final Map<Class<?>, InjectionMetadata> injectionMetadataCache = new ConcurrentHashMap<>();
+
+    /**启动快照文件，没有配置时为null*/
+    private File snapshotFile;
+
+    /**本次启动恢复或者写入的快照，路由表在MVC初始化之后补充进去*/
+    private StartupSnapshot startupSnapshot;
+
+    /**是否从快照恢复，恢复时注入点、切面匹配结果直接从快照中解析*/
+    private boolean snapshotRestored;
+
     public DefaultApplicationContext(String configLocation) {
         this.configLocation = configLocation;
         try {
             refresh();
         } catch (Exception e) {
-            e.printStackTrace();
+            //启动失败时先写出报告再抛出，不返回初始化了一半的容器
+            this.startupProfiler.recordFailure(e);
+            throw new IllegalStateException("Failed to start application context from " + configLocation, e);
+        } finally {
+            this.startupProfiler.finish();
+            writeStartupReport();
         }
     }
 
     private void refresh() throws Exception {
         //1、定位，定位配置文件
+        long start = System.nanoTime();
         reader = new BeanDefinitionReader(this.configLocation);
+        this.startupProfiler.recordPhase("config", start);
+
+        //编译切点、解析切面，之后每个bean只做匹配
+        start = System.nanoTime();
+        this.aspectAdvisors = createAspectAdvisors();
+        this.startupProfiler.recordPhase("aop", start);
+
+        //配置了启动快照并且classpath没有变化的话，直接恢复上一次解析的结果，跳过2、3
+        start = System.nanoTime();
+        String snapshotLocation = getConfig().getProperty(STARTUP_SNAPSHOT);
+        this.snapshotFile = snapshotLocation == null ? null : new File(snapshotLocation);
+        String fingerprint = snapshotLocation == null ? null : fingerprint();
+        StartupSnapshot snapshot = fingerprint == null ? null : readSnapshot(this.snapshotFile, fingerprint);
+        if (snapshotLocation != null) {
+            this.startupProfiler.recordPhase("snapshotRead", start);
+        }
 
-        //2、加载配置文件，扫描相关的类，把它们封装成BeanDefinition
-        List<BeanDefinition> beanDefinitions = reader.loadBeanDefinitions();
+        Map<String, Set<String>> dependencies;
+        if (snapshot != null) {
+            start = System.nanoTime();
+            this.startupSnapshot = snapshot;
+            this.snapshotRestored = true;
+            doRegisterBeanDefinition(snapshot.getBeanDefinitions());
+            this.beanNamesByType.putAll(snapshot.getBeanNamesByType());
+            dependencies = snapshot.getDependencies();
+            this.startupProfiler.recordPhase("registration", start);
+        } else {
+            //2、加载配置文件，扫描相关的类，把它们封装成BeanDefinition
+            start = System.nanoTime();
+            reader.scan();
+            this.startupProfiler.recordPhase("scan", start);
 
-        //3、注册，把配置信息放到容器里面
-        //到这里为止，容器初始化完毕
-        doRegisterBeanDefinition(beanDefinitions);
+            start = System.nanoTime();
+            List<BeanDefinition> beanDefinitions = reader.loadBeanDefinitions();
+            this.startupProfiler.recordPhase("definitions", start);
+
+            //3、注册，把配置信息放到容器里面
+            //到这里为止，容器初始化完毕
+            start = System.nanoTime();
+            doRegisterBeanDefinition(beanDefinitions);
+            buildTypeIndex(beanDefinitions);
+            this.startupProfiler.recordPhase("registration", start);
+
+            //按@Autowired的依赖关系建图，被依赖的bean先创建
+            start = System.nanoTime();
+            dependencies = buildDependencyGraph();
+            this.startupProfiler.recordPhase("dependencyGraph", start);
+
+            if (fingerprint != null) {
+                start = System.nanoTime();
+                this.startupSnapshot = createSnapshot(fingerprint, beanDefinitions, dependencies);
+                if (this.startupSnapshot != null) {
+                    writeSnapshot(this.snapshotFile, this.startupSnapshot);
+                }
+                this.startupProfiler.recordPhase("snapshotWrite", start);
+            }
+        }
 
         //4、把不是延时加载的类，提前初始化
-        doAutowired();
+        start = System.nanoTime();
+        doAutowired(dependencies);
+        this.startupProfiler.recordPhase("instantiation", start);
+    }
+
+    public StartupProfiler getStartupProfiler() {
+        return this.startupProfiler;
+    }
+
+    /**
+     * 启动耗时报告，启动完成之前获取的是到目前为止的数据
+     */
+    public StartupReport getStartupReport() {
+        return this.startupProfiler.getReport();
+    }
+
+    /**
+     * 配置了startupReport时把启动耗时报告写成JSON文件
+     * refresh结束时写一次，DispatcherServlet初始化完MVC组件之后会再写一次
+     */
+    public void writeStartupReport() {
+        String location = this.reader == null ? null : getConfig().getProperty(STARTUP_REPORT);
+        if (location == null) {
+            return;
+        }
+        try {
+            File file = new File(location);
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            Files.write(file.toPath(), getStartupReport().toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String fingerprint() {
+        try {
+            return StartupSnapshot.fingerprint(getConfig(), getConfig().getProperty("scanPackage"),
+                    this.getClass().getClassLoader(), this.reader.hasComponentIndex());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 读取启动快照，指纹不一致或者用到的类文件有变化时返回null
+     */
+    private StartupSnapshot readSnapshot(File file, String fingerprint) {
+        long start = System.currentTimeMillis();
+        try {
+            StartupSnapshot snapshot = StartupSnapshot.read(file);
+            if (snapshot == null || !fingerprint.equals(snapshot.getFingerprint()) || !snapshot.isUpToDate()) {
+                System.out.println("Startup snapshot " + file + " is missing or stale, rebuilding");
+                return null;
+            }
+            System.out.println("Restored " + snapshot.getBeanDefinitions().size() + " bean definitions from startup snapshot "
+                    + file + " in " + (System.currentTimeMillis() - start) + "ms");
+            return snapshot;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
-    private void doAutowired() {
-        for (Map.Entry<String, BeanDefinition> beanDefinitionEntry : beanDefinitionMap.entrySet()) {
-            String beanName = beanDefinitionEntry.getKey();
-            if (!beanDefinitionEntry.getValue().isLazyInit()) {
+    /**
+     * 记录每个bean类的注入点、切面匹配结果以及用到的类文件，bean类加载失败时不写快照
+     */
+    private StartupSnapshot createSnapshot(String fingerprint, List<BeanDefinition> beanDefinitions,
+                                           Map<String, Set<String>> dependencies) {
+        Map<String, long[]> classFiles = new TreeMap<>();
+        Map<String, StartupSnapshot.InjectionPoints> injectionPoints = new TreeMap<>();
+        Map<String, StartupSnapshot.AopMatch> aopMatches = new TreeMap<>();
+        try {
+            for (AspectAdvisor advisor : this.aspectAdvisors) {
+                StartupSnapshot.addClassFiles(classFiles, advisor.getAspectClass());
+            }
+            for (BeanDefinition beanDefinition : beanDefinitions) {
+                String className = beanDefinition.getBeanClassName();
+                if (injectionPoints.containsKey(className)) {
+                    continue;
+                }
+                Class<?> beanClass = Class.forName(className, false, this.getClass().getClassLoader());
+                StartupSnapshot.addClassFiles(classFiles, beanClass);
+
+                String[] constructorParameterTypes;
                 try {
-                    getBean(beanName);
+                    constructorParameterTypes = StartupSnapshot.typeNames(
+                            findConstructorPlan(beanClass).getConstructor().getParameterTypes());
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    //没有可用的构造器，在创建时再报错
+                    constructorParameterTypes = null;
+                }
+                List<String[]> fields = new ArrayList<>();
+                for (InjectionMetadata.InjectedField injectedField : findInjectionMetadata(beanClass).getInjectedFields()) {
+                    Field field = injectedField.getField();
+                    fields.add(new String[]{field.getDeclaringClass().getName(), field.getName()});
                 }
+                injectionPoints.put(className, new StartupSnapshot.InjectionPoints(constructorParameterTypes, fields));
+
+                List<AspectAdvisor> advisors = AdvisedSupport.findAdvisors(beanClass, this.aspectAdvisors);
+                List<StartupSnapshot.MethodMatch> methods = new ArrayList<>();
+                if (!advisors.isEmpty()) {
+                    for (Map.Entry<Method, List<AspectAdvisor>> entry
+                            : AdvisedSupport.matchMethods(beanClass, advisors).entrySet()) {
+                        methods.add(new StartupSnapshot.MethodMatch(entry.getKey().getName(),
+                                StartupSnapshot.typeNames(entry.getKey().getParameterTypes()), advisorIndexes(entry.getValue())));
+                    }
+                }
+                aopMatches.put(className, new StartupSnapshot.AopMatch(advisorIndexes(advisors), methods));
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        return new StartupSnapshot(fingerprint, beanDefinitions, this.beanNamesByType, dependencies,
+                classFiles, injectionPoints, aopMatches);
+    }
+
+    private int[] advisorIndexes(List<AspectAdvisor> advisors) {
+        int[] indexes = new int[advisors.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = this.aspectAdvisors.indexOf(advisors.get(i));
+        }
+        return indexes;
+    }
+
+    private List<AspectAdvisor> resolveAdvisors(int[] indexes) {
+        List<AspectAdvisor> advisors = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            advisors.add(this.aspectAdvisors.get(index));
+        }
+        return advisors;
+    }
+
+    /**
+     * 从快照恢复时的路由表，没有恢复或者快照中没有路由表时返回null
+     */
+    public List<RouteDefinition> getRestoredRoutes() {
+        return this.snapshotRestored ? this.startupSnapshot.getRoutes() : null;
+    }
+
+    /**
+     * DispatcherServlet建好路由表之后补充到启动快照中，快照中已经有路由表时不再写
+     */
+    public void registerRoutes(List<RouteDefinition> routes) {
+        if (this.startupSnapshot == null || this.startupSnapshot.getRoutes() != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.startupSnapshot.setRoutes(routes);
+        writeSnapshot(this.snapshotFile, this.startupSnapshot);
+        this.startupProfiler.recordPhase("snapshotRoutes", start);
+    }
+
+    private void writeSnapshot(File file, StartupSnapshot snapshot) {
+        try {
+            snapshot.write(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void doAutowired(Map<String, Set<String>> dependencies) {
+        if (Boolean.parseBoolean(getConfig().getProperty(INSTANTIATE_PARALLEL))) {
+            String threads = getConfig().getProperty(INSTANTIATE_THREADS);
+            int poolSize = threads == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads.trim());
+            doAutowiredParallel(dependencies, poolSize);
+        } else {
+            doAutowiredSequential(dependencies);
+        }
+    }
+
+    /**
+     * 收集所有需要提前初始化的bean以及它们依赖的bean
+     * key为beanName，value为它依赖的并且也需要提前初始化的beanName
+     */
+    private Map<String, Set<String>> buildDependencyGraph() {
+        Map<String, Set<String>> dependencies = new TreeMap<>();
+        for (Map.Entry<String, BeanDefinition> entry : beanDefinitionMap.entrySet()) {
+            //只有单例需要提前创建
+            if (entry.getValue().isLazyInit() || !entry.getValue().isSingleton()) {
+                continue;
+            }
+            dependencies.put(entry.getKey(), new TreeSet<>());
+        }
+
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            Class<?> beanClass;
+            try {
+                beanClass = Class.forName(beanDefinitionMap.get(entry.getKey()).getBeanClassName(), false,
+                        this.getClass().getClassLoader());
+            } catch (ClassNotFoundException e) {
+                continue;
+            }
+
+            //构造器参数
+            try {
+                ConstructorPlan plan = findConstructorPlan(beanClass);
+                for (int i = 0; i < plan.getParameterCount(); i++) {
+                    addDependency(dependencies, entry.getValue(), plan.getBeanNames()[i], plan.getQualifiers()[i]);
+                }
+            } catch (Exception e) {
+                //没有可用的构造器，在创建时再报错
+            }
+
+            //成员变量
+            for (InjectionMetadata.InjectedField injectedField : findInjectionMetadata(beanClass).getInjectedFields()) {
+                //@Lazy的注入点只注入代理，不需要等依赖的bean先创建
+                if (!injectedField.isLazy()) {
+                    addDependency(dependencies, entry.getValue(), injectedField.getBeanName(), injectedField.getField().getName());
+                }
+            }
+            entry.getValue().remove(entry.getKey());
+        }
+        return dependencies;
+    }
+
+    /**
+     * @Autowired可以按beanName或者按类型注入，找不到或者有歧义的在创建时再报错
+     */
+    private void addDependency(Map<String, Set<String>> dependencies, Set<String> beanDependencies,
+                               String name, String qualifier) {
+        String dependency;
+        try {
+            dependency = resolveBeanName(name, qualifier);
+        } catch (Exception e) {
+            return;
+        }
+        if (dependency != null && dependencies.containsKey(dependency)) {
+            beanDependencies.add(dependency);
+        }
+    }
+
+    /**
+     * 单线程按依赖顺序创建，同一批可以创建的bean按名字排序，每次启动的顺序都一样
+     */
+    private void doAutowiredSequential(Map<String, Set<String>> dependencies) {
+        Map<String, Set<String>> dependents = invert(dependencies);
+        Map<String, Integer> remaining = new HashMap<>();
+        TreeSet<String> ready = new TreeSet<>();
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        while (!ready.isEmpty()) {
+            String beanName = ready.pollFirst();
+            remaining.remove(beanName);
+            createEagerly(beanName);
+            for (String dependent : dependents.get(beanName)) {
+                int count = remaining.get(dependent) - 1;
+                remaining.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        //剩下的是循环依赖，按名字顺序创建
+        for (String beanName : new TreeSet<>(remaining.keySet())) {
+            createEagerly(beanName);
+        }
+    }
+
+    /**
+     * 多线程按依赖顺序创建，一个bean依赖的bean都创建完之后才会提交它
+     */
+    private void doAutowiredParallel(Map<String, Set<String>> dependencies, int poolSize) {
+        Map<String, Set<String>> dependents = invert(dependencies);
+        Map<String, Integer> remaining = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, poolSize), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "bean-init-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+        //已经提交的任务，被中断时取消还没有完成的
+        List<Future<String>> futures = new ArrayList<>();
+
+        int inFlight = 0;
+        try {
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                remaining.put(entry.getKey(), entry.getValue().size());
+                if (entry.getValue().isEmpty()) {
+                    futures.add(submit(completionService, entry.getKey()));
+                    inFlight++;
+                }
+            }
+
+            while (inFlight > 0) {
+                String beanName = completionService.take().get();
+                inFlight--;
+                remaining.remove(beanName);
+                for (String dependent : dependents.get(beanName)) {
+                    int count = remaining.get(dependent) - 1;
+                    remaining.put(dependent, count);
+                    if (count == 0) {
+                        futures.add(submit(completionService, dependent));
+                        inFlight++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            //保留中断状态，取消还没有完成的创建，剩下的bean在第一次getBean时再创建
+            Thread.currentThread().interrupt();
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+            return;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+
+        //剩下的是循环依赖，回到当前线程按名字顺序创建
+        for (String beanName : new TreeSet<>(remaining.keySet())) {
+            createEagerly(beanName);
+        }
+    }
+
+    private Future<String> submit(CompletionService<String> completionService, String beanName) {
+        return completionService.submit(() -> {
+            createEagerly(beanName);
+            return beanName;
+        });
+    }
+
+    private static Map<String, Set<String>> invert(Map<String, Set<String>> dependencies) {
+        Map<String, Set<String>> dependents = new HashMap<>();
+        for (String beanName : dependencies.keySet()) {
+            dependents.put(beanName, new TreeSet<>());
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                dependents.get(dependency).add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * 提前创建一个bean，耗时由StartupProfiler记录
+     */
+    private void createEagerly(String beanName) {
+        try {
+            getBean(beanName);
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
@@ -76,6 +568,78 @@ public class DefaultApplicationContext implements ApplicationContext {
         }
     }
 
+    private void buildTypeIndex(List<BeanDefinition> beanDefinitions) throws ClassNotFoundException {
+        //按类型建立索引：类本身、所有父类和接口 -> beanName
+        Map<String, List<String>> beanNames = new HashMap<>();
+        for (BeanDefinition beanDefinition : beanDefinitions) {
+            Class<?> beanClass = Class.forName(beanDefinition.getBeanClassName(), false, this.getClass().getClassLoader());
+            for (String typeName : getTypeNames(beanClass)) {
+                beanNames.computeIfAbsent(typeName, k -> new ArrayList<>()).add(beanDefinition.getFactoryBeanName());
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : beanNames.entrySet()) {
+            this.beanNamesByType.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 一个类可以被当作哪些类型注入，不包括Object
+     */
+    private static Set<String> getTypeNames(Class<?> beanClass) {
+        Set<String> typeNames = new LinkedHashSet<>();
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            typeNames.add(c.getName());
+            addInterfaceNames(c, typeNames);
+        }
+        return typeNames;
+    }
+
+    private static void addInterfaceNames(Class<?> clazz, Set<String> typeNames) {
+        for (Class<?> i : clazz.getInterfaces()) {
+            if (typeNames.add(i.getName())) {
+                addInterfaceNames(i, typeNames);
+            }
+        }
+    }
+
+    /**
+     * 把beanName或者类型的全类名解析为beanName，找不到返回null
+     * 同一个类型有多个bean时，优先选择@Primary的，其次选择beanName和qualifier相同的（如成员变量名）
+     */
+    private String resolveBeanName(String name, String qualifier) throws Exception {
+        if (this.beanDefinitionMap.containsKey(name)) {
+            return name;
+        }
+        String[] candidates = this.beanNamesByType.get(name);
+        if (candidates == null) {
+            return null;
+        }
+        if (candidates.length == 1) {
+            return candidates[0];
+        }
+
+        String primary = null;
+        for (String candidate : candidates) {
+            if (this.beanDefinitionMap.get(candidate).isPrimary()) {
+                if (primary != null) {
+                    throw new Exception("No qualifying bean of type '" + name
+                            + "' available: more than one 'primary' bean found among candidates: " + Arrays.toString(candidates));
+                }
+                primary = candidate;
+            }
+        }
+        if (primary != null) {
+            return primary;
+        }
+        for (String candidate : candidates) {
+            if (candidate.equals(qualifier)) {
+                return candidate;
+            }
+        }
+        throw new Exception("No qualifying bean of type '" + name + "' available: expected single matching bean but found "
+                + candidates.length + ": " + Arrays.toString(candidates));
+    }
+
     @Override
     public Object getBean(String beanName) throws Exception {
         //如果是单例，那么在上一次调用getBean获取该bean时已经初始化过了，拿到不为空的实例直接返回即可
@@ -85,23 +649,248 @@ public class DefaultApplicationContext implements ApplicationContext {
         }
 
         BeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
+        if (beanDefinition == null) {
+            //不是beanName的话按类型查找
+            String resolvedName = resolveBeanName(beanName, null);
+            if (resolvedName == null) {
+                throw new Exception("No bean named \"" + beanName + "\" is defined");
+            }
+            return getBean(resolvedName);
+        }
+
+        //按作用域分别处理
+        if (beanDefinition.isPrototype()) {
+            return getPrototype(beanName, beanDefinition);
+        }
+        if (beanDefinition.isRequestScoped()) {
+            return getRequestScoped(beanName, beanDefinition);
+        }
+        if (!beanDefinition.isSingleton()) {
+            throw new Exception("No Scope registered for scope name '" + beanDefinition.getScope() + "'");
+        }
+
+        //以全类名作为单例的key，同时也按beanName缓存，按这两个名字获取时都能直接命中
+        String singletonName = beanDefinition.getBeanClassName();
+        //只有创建单例的线程在注入、代理都完成之后才会放进一级缓存，
+        //这里拿到的可能是循环依赖时提前暴露的引用，不能当作最终的单例缓存
+        BeanWrapper beanWrapper = this.factoryBeanInstanceCache.get(singletonName);
+        if (beanWrapper == null) {
+            beanWrapper = createSingleton(singletonName, beanName, beanDefinition);
+        }
+        return beanWrapper.getWrappedInstance();
+    }
+
+    /**
+     * 创建单例，每个单例一把锁，并发获取同一个bean时只会创建一次，不同的bean之间互不影响
+     * 其他线程正在创建的单例要等它创建完成，不会拿到还没有完成注入的对象
+     * 单例分三级缓存：
+     * 1、factoryBeanInstanceCache：创建完成的单例
+     * 2、earlySingletonObjects：提前暴露的引用，还没有完成注入
+     * 3、singletonFactories：实例化之后登记的工厂，只有出现循环依赖时才会调用它生成提前暴露的引用（包括代理）
+     */
+    private BeanWrapper createSingleton(String singletonName, String beanName, BeanDefinition beanDefinition) throws Exception {
+        ReentrantLock lock = this.singletonLocks.computeIfAbsent(singletonName, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            //其他线程正在创建，和当前线程互相等待时直接返回提前暴露的引用
+            Object earlyReference = awaitSingletonLock(singletonName, beanName, lock);
+            if (earlyReference != null) {
+                return new BeanWrapper(earlyReference);
+            }
+        }
+        if (lock.getHoldCount() == 1) {
+            synchronized (this.singletonLockOwners) {
+                this.singletonLockOwners.put(singletonName, Thread.currentThread());
+            }
+        }
+        try {
+            //拿到锁之后再检查一次，可能已经被其他线程创建好了
+            BeanWrapper beanWrapper = this.factoryBeanInstanceCache.get(singletonName);
+            if (beanWrapper != null) {
+                return beanWrapper;
+            }
+
+            //当前线程正在创建这个bean（循环依赖），返回提前暴露的引用
+            Set<String> inCreation = this.singletonsCurrentlyInCreation.get();
+            if (inCreation.contains(singletonName)) {
+                return new BeanWrapper(getEarlySingletonForCycle(singletonName, beanName));
+            }
+
+            inCreation.add(singletonName);
+            StartupProfiler.BeanStep step = this.startupProfiler.beginBean(beanName);
+            try {
+                //调用反射初始化Bean
+                step.phase(StartupProfiler.INSTANTIATE);
+                Object target = instantiateBean(beanName, beanDefinition);
+
+                //登记提前暴露引用的工厂，出现循环依赖时拿到的也是最终的对象（代理）
+                this.singletonFactories.put(singletonName, () -> wrapIfNecessary(target));
+
+                //注入，代理对象没有成员变量，需要注入到被代理的对象中
+                step.phase(StartupProfiler.POPULATE);
+                populateBean(beanName, beanDefinition, target);
+
+                //已经提前暴露过的直接使用，否则符合PointCut的规则的话，将创建代理对象
+                step.phase(StartupProfiler.PROXY);
+                Object instance;
+                synchronized (this.earlySingletonObjects) {
+                    instance = this.earlySingletonObjects.get(singletonName);
+                    this.singletonFactories.remove(singletonName);
+                }
+                if (instance == null) {
+                    instance = wrapIfNecessary(target);
+                }
 
-        //调用反射初始化Bean
-        instance = instantiateBean(beanName, beanDefinition);
+                //把这个对象封装到BeanWrapper中
+                beanWrapper = new BeanWrapper(instance);
 
-        //把这个对象封装到BeanWrapper中
-        BeanWrapper beanWrapper = new BeanWrapper(instance);
+                //把BeanWrapper保存到IOC容器中去
+                //注册一个全类名（如com.lqb.HelloService）
+                this.factoryBeanInstanceCache.put(singletonName, beanWrapper);
+                //注册一个类名（首字母小写，如helloService）
+                this.factoryBeanInstanceCache.put(beanName, beanWrapper);
+                return beanWrapper;
+            } finally {
+                step.end();
+                synchronized (this.earlySingletonObjects) {
+                    this.earlySingletonObjects.remove(singletonName);
+                    this.singletonFactories.remove(singletonName);
+                }
+                inCreation.remove(singletonName);
+            }
+        } finally {
+            if (lock.getHoldCount() == 1) {
+                synchronized (this.singletonLockOwners) {
+                    this.singletonLockOwners.remove(singletonName);
+                }
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待其他线程释放单例锁，等待之前沿着"锁的持有者在等待哪个单例"检查是否会回到当前线程
+     * 会回到当前线程说明是跨线程的循环依赖，继续等待会死锁，按单线程的循环依赖处理：
+     * 已经实例化的返回提前暴露的引用，还在构造器中的报错
+     * 拿到锁时返回null
+     */
+    private Object awaitSingletonLock(String singletonName, String beanName, ReentrantLock lock) throws Exception {
+        Thread current = Thread.currentThread();
+        boolean cycle;
+        synchronized (this.singletonLockOwners) {
+            cycle = isWaitingOn(singletonName, current);
+            if (!cycle) {
+                this.singletonLockWaits.put(current, singletonName);
+            }
+        }
+        if (cycle) {
+            return getEarlySingletonForCycle(singletonName, beanName);
+        }
+        long waitStart = System.nanoTime();
+        try {
+            lock.lock();
+            //只记录确实被阻塞的等待，等待的时间不算当前正在创建的bean自身的耗时
+            this.startupProfiler.recordLockWait(System.nanoTime() - waitStart);
+        } finally {
+            synchronized (this.singletonLockOwners) {
+                this.singletonLockWaits.remove(current);
+            }
+        }
+        return null;
+    }
 
-        //把BeanWrapper保存到IOC容器中去
-        //注册一个类名（首字母小写，如helloService）
-        this.factoryBeanInstanceCache.put(beanName, beanWrapper);
-        //注册一个全类名（如com.lqb.HelloService）
-        this.factoryBeanInstanceCache.put(beanDefinition.getBeanClassName(), beanWrapper);
+    /**
+     * 单例锁的持有者是否（间接）在等待thread，调用时必须持有singletonLockOwners
+     */
+    private boolean isWaitingOn(String singletonName, Thread thread) {
+        Thread owner = this.singletonLockOwners.get(singletonName);
+        for (int i = 0; owner != null && i <= this.singletonLockWaits.size(); i++) {
+            if (owner == thread) {
+                return true;
+            }
+            String waitingFor = this.singletonLockWaits.get(owner);
+            owner = waitingFor == null ? null : this.singletonLockOwners.get(waitingFor);
+        }
+        return false;
+    }
 
-        //注入
-        populateBean(beanName, new BeanDefinition(), beanWrapper);
+    /**
+     * 循环依赖时使用提前暴露的引用，还没有实例化完成（构造器注入的循环依赖）时无法解决
+     */
+    private Object getEarlySingletonForCycle(String singletonName, String beanName) throws Exception {
+        Object earlyReference = getEarlySingleton(singletonName);
+        if (earlyReference == null) {
+            throw new Exception("Requested bean \"" + beanName
+                    + "\" is currently in creation: Is there an unresolvable circular reference?");
+        }
+        return earlyReference;
+    }
 
-        return this.factoryBeanInstanceCache.get(beanName).getWrappedInstance();
+    /**
+     * prototype：每次都是新的实例，配置了对象池的话从池中借出
+     */
+    private Object getPrototype(String beanName, BeanDefinition beanDefinition) throws Exception {
+        if (beanDefinition.getPoolSize() <= 0) {
+            return createBean(beanName, beanDefinition);
+        }
+        PrototypePool pool = this.prototypePools.computeIfAbsent(beanDefinition.getBeanClassName(),
+                k -> new PrototypePool(beanDefinition.getPoolSize(), () -> createBean(beanName, beanDefinition)));
+        return pool.borrow();
+    }
+
+    /**
+     * 把从对象池借出的prototype bean归还，没有配置对象池的直接忽略
+     * 重复归还、归还不是从池中借出的实例也会被忽略
+     */
+    public void releaseBean(String beanName, Object bean) {
+        BeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
+        if (beanDefinition == null || bean == null) {
+            return;
+        }
+        PrototypePool pool = this.prototypePools.get(beanDefinition.getBeanClassName());
+        if (pool != null) {
+            pool.release(bean);
+        }
+    }
+
+    /**
+     * request：同一个请求中共享一个实例，只在处理请求的线程中使用，不需要加锁
+     */
+    private Object getRequestScoped(String beanName, BeanDefinition beanDefinition) throws Exception {
+        Map<String, Object> requestBeans = RequestContextHolder.getRequestBeans();
+        if (requestBeans == null) {
+            throw new IllegalStateException("Scope 'request' is not active for bean \"" + beanName
+                    + "\": no request is bound to the current thread");
+        }
+        Object instance = requestBeans.get(beanDefinition.getBeanClassName());
+        if (instance == null) {
+            instance = createBean(beanName, beanDefinition);
+            requestBeans.put(beanDefinition.getBeanClassName(), instance);
+        }
+        return instance;
+    }
+
+    /**
+     * 创建一个不缓存的bean（prototype和request作用域），实例化、注入、代理
+     */
+    private Object createBean(String beanName, BeanDefinition beanDefinition) throws Exception {
+        //非单例没有提前暴露的引用，循环依赖无法解决
+        Set<String> inCreation = this.prototypesCurrentlyInCreation.get();
+        if (!inCreation.add(beanDefinition.getBeanClassName())) {
+            throw new Exception("Requested bean \"" + beanName
+                    + "\" is currently in creation: Is there an unresolvable circular reference?");
+        }
+        StartupProfiler.BeanStep step = this.startupProfiler.beginBean(beanName);
+        try {
+            step.phase(StartupProfiler.INSTANTIATE);
+            Object target = instantiateBean(beanName, beanDefinition);
+            step.phase(StartupProfiler.POPULATE);
+            populateBean(beanName, beanDefinition, target);
+            step.phase(StartupProfiler.PROXY);
+            return wrapIfNecessary(target);
+        } finally {
+            step.end();
+            inCreation.remove(beanDefinition.getBeanClassName());
+        }
     }
 
     private Object getSingleton(String beanName) {
@@ -109,43 +898,199 @@ public class DefaultApplicationContext implements ApplicationContext {
         return beanWrapper == null ? null : beanWrapper.getWrappedInstance();
     }
 
-    private Object instantiateBean(String beanName, BeanDefinition beanDefinition) {
+    /**
+     * 获取提前暴露的引用，第一次获取时通过singletonFactories生成
+     */
+    private Object getEarlySingleton(String singletonName) {
+        Object earlyReference = this.earlySingletonObjects.get(singletonName);
+        if (earlyReference != null) {
+            return earlyReference;
+        }
+        synchronized (this.earlySingletonObjects) {
+            earlyReference = this.earlySingletonObjects.get(singletonName);
+            if (earlyReference == null) {
+                Supplier<Object> singletonFactory = this.singletonFactories.remove(singletonName);
+                if (singletonFactory != null) {
+                    earlyReference = singletonFactory.get();
+                    this.earlySingletonObjects.put(singletonName, earlyReference);
+                }
+            }
+            return earlyReference;
+        }
+    }
+
+    /**
+     * 获取需要注入的bean，还没有创建的当场创建
+     * 当前线程正在创建的（循环依赖）直接使用提前暴露的引用；其他线程正在创建的等它创建完成，
+     * 两个线程互相等待时由createSingleton发现并按循环依赖处理
+     */
+    private Object resolveDependency(String name, String qualifier) throws Exception {
+        String beanName = resolveBeanName(name, qualifier);
+        if (beanName == null) {
+            throw new Exception("No bean named \"" + name + "\" is defined");
+        }
+        Object instance = getSingleton(beanName);
+        if (instance != null) {
+            return instance;
+        }
+
+        BeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
+
+        String singletonName = beanDefinition.getBeanClassName();
+        if (this.singletonsCurrentlyInCreation.get().contains(singletonName)) {
+            Object earlyReference = getEarlySingleton(singletonName);
+            if (earlyReference != null) {
+                return earlyReference;
+            }
+        }
+        return getBean(beanName);
+    }
+
+    private Object instantiateBean(String beanName, BeanDefinition beanDefinition) throws Exception {
         //1、拿到要实例化的对象的类名
         String className = beanDefinition.getBeanClassName();
 
-        //2、反射实例化，得到一个对象
-        Object instance = null;
+        //2、找到实例化用的构造器，构造器的参数从容器中获取
+        Class<?> clazz = Class.forName(className);
+        ConstructorPlan plan = findConstructorPlan(clazz);
+        String[] beanNames = plan.getBeanNames();
+        String[] qualifiers = plan.getQualifiers();
+        Object[] args = new Object[beanNames.length];
+        for (int i = 0; i < beanNames.length; i++) {
+            args[i] = resolveDependency(beanNames[i], qualifiers[i]);
+        }
+
+        //3、通过预先绑定的MethodHandle调用构造器，得到一个对象
         try {
-            Class<?> clazz = Class.forName(className);
-            instance = clazz.newInstance();
+            return plan.newInstance(args);
+        } catch (Exception e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Exception("Failed to instantiate bean \"" + beanName + "\" through " + plan.getConstructor(), e);
+        }
+    }
 
-            //############填充如下代码###############
-            AdvisedSupport config = getAopConfig();
-            config.setTargetClass(clazz);
-            config.setTarget(instance);
+    private ConstructorPlan findConstructorPlan(Class<?> clazz) throws Exception {
+        ConstructorPlan plan = this.constructorPlanCache.get(clazz);
+        if (plan != null) {
+            return plan;
+        }
+        plan = this.snapshotRestored ? restoreConstructorPlan(clazz) : null;
+        if (plan == null) {
+            plan = ConstructorPlan.forClass(clazz);
+        }
+        ConstructorPlan existing = this.constructorPlanCache.putIfAbsent(clazz, plan);
+        return existing == null ? plan : existing;
+    }
 
-            //符合PointCut的规则的话，将创建代理对象
-            if(config.pointCutMatch()) {
-                instance = createProxy(config).getProxy();
-            }
-            //#############填充完毕##############
+    /**
+     * 用快照中记录的构造器参数类型找到构造器，不再按注解选择，找不到时返回null
+     */
+    private ConstructorPlan restoreConstructorPlan(Class<?> clazz) throws IllegalAccessException {
+        StartupSnapshot.InjectionPoints injectionPoints = this.startupSnapshot.getInjectionPoints().get(clazz.getName());
+        if (injectionPoints == null || injectionPoints.getConstructorParameterTypes() == null) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor(
+                    StartupSnapshot.resolveTypes(injectionPoints.getConstructorParameterTypes(), clazz.getClassLoader()));
+            return ConstructorPlan.forConstructor(constructor);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+    }
 
+    private Object wrapIfNecessary(Object instance) {
+        if (this.aspectAdvisors.isEmpty()) {
+            return instance;
+        }
+        try {
+            Class<?> targetClass = instance.getClass();
+            StartupSnapshot.AopMatch match = this.snapshotRestored
+                    ? this.startupSnapshot.getAopMatches().get(targetClass.getName()) : null;
+            //快照中记录了不需要代理
+            if (match != null && match.getAdvisors().length == 0) {
+                return instance;
+            }
+            AdvisedSupport config = match == null ? null : restoreAdvisedSupport(targetClass, match);
+            if (config == null) {
+                //只保留类符合切点的切面，一个都没有就不需要代理
+                List<AspectAdvisor> advisors = AdvisedSupport.findAdvisors(targetClass, this.aspectAdvisors);
+                if (advisors.isEmpty()) {
+                    return instance;
+                }
+                //所有切面合并到一个代理中
+                config = new AdvisedSupport(advisors);
+            }
+            config.setTargetClass(targetClass);
+            config.setTarget(instance);
+            return createProxy(config).getProxy();
         } catch (Exception e) {
             e.printStackTrace();
         }
-
         return instance;
     }
 
-    private AdvisedSupport getAopConfig() {
+    /**
+     * 用快照中记录的切面匹配结果创建代理配置，不再匹配切点，方法找不到时返回null
+     */
+    private AdvisedSupport restoreAdvisedSupport(Class<?> targetClass, StartupSnapshot.AopMatch match) {
+        Map<Method, List<AspectAdvisor>> matchedMethods = new HashMap<>();
+        try {
+            for (StartupSnapshot.MethodMatch method : match.getMethods()) {
+                matchedMethods.put(targetClass.getMethod(method.getName(),
+                        StartupSnapshot.resolveTypes(method.getParameterTypes(), targetClass.getClassLoader())),
+                        resolveAdvisors(method.getAdvisors()));
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+        AdvisedSupport config = new AdvisedSupport(resolveAdvisors(match.getAdvisors()));
+        config.setMatchedMethods(matchedMethods);
+        return config;
+    }
+
+    /**
+     * 读取AOP配置，编译成切面并按优先级排序，整个容器只执行一次
+     * 不带前缀的pointCut、aspectClass等是默认切面，aspects中列出的切面按名称读取
+     */
+    private List<AspectAdvisor> createAspectAdvisors() {
+        List<AspectAdvisor> advisors = new ArrayList<>();
+        addAspectAdvisor(advisors, "");
+        String aspects = getConfig().getProperty(ASPECTS);
+        if (aspects != null) {
+            for (String name : aspects.split(",")) {
+                if (!"".equals(name.trim())) {
+                    addAspectAdvisor(advisors, name.trim() + ".");
+                }
+            }
+        }
+        //排序是稳定的，优先级相同的切面保持配置的顺序
+        advisors.sort(AspectAdvisor.ORDER_COMPARATOR);
+        return advisors;
+    }
+
+    private void addAspectAdvisor(List<AspectAdvisor> advisors, String prefix) {
+        Properties properties = getConfig();
         AopConfig config = new AopConfig();
-        config.setPointCut(this.reader.getConfig().getProperty("pointCut"));
-        config.setAspectClass(this.reader.getConfig().getProperty("aspectClass"));
-        config.setAspectBefore(this.reader.getConfig().getProperty("aspectBefore"));
-        config.setAspectAfter(this.reader.getConfig().getProperty("aspectAfter"));
-        config.setAspectAfterThrow(this.reader.getConfig().getProperty("aspectAfterThrow"));
-        config.setAspectAfterThrowingName(this.reader.getConfig().getProperty("aspectAfterThrowingName"));
-        return new AdvisedSupport(config);
+        config.setPointCut(properties.getProperty(prefix + "pointCut"));
+        config.setAspectClass(properties.getProperty(prefix + "aspectClass"));
+        config.setAspectBefore(properties.getProperty(prefix + "aspectBefore"));
+        config.setAspectAfter(properties.getProperty(prefix + "aspectAfter"));
+        config.setAspectAfterThrow(properties.getProperty(prefix + "aspectAfterThrow"));
+        config.setAspectAfterThrowingName(properties.getProperty(prefix + "aspectAfterThrowingName"));
+        String order = properties.getProperty(prefix + "aspectOrder");
+        if (order != null) {
+            config.setOrder(Integer.valueOf(order.trim()));
+        }
+        if (config.getPointCut() == null || config.getAspectClass() == null) {
+            return;
+        }
+        try {
+            advisors.add(new AspectAdvisor(config));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     private AopProxy createProxy(AdvisedSupport config) {
@@ -157,43 +1102,108 @@ public class DefaultApplicationContext implements ApplicationContext {
         return new CglibAopProxy(config);
     }
 
-    private void populateBean(String beanName, BeanDefinition beanDefinition, BeanWrapper beanWrapper) {
-
-        Class<?> clazz = beanWrapper.getWrappedClass();
+    private void populateBean(String beanName, BeanDefinition beanDefinition, Object target) throws Exception {
+        //注入点按类缓存，同一个类只解析一次
+        InjectionMetadata metadata = findInjectionMetadata(target.getClass());
+        //只用构造器注入的bean没有需要注入的成员变量，直接跳过
+        if (metadata.isEmpty()) {
+            return;
+        }
 
-        //获得所有的成员变量
-        Field[] fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            //如果没有被Autowired注解的成员变量则直接跳过
-            if (!field.isAnnotationPresent(Autowired.class)) {
-                continue;
+        for (InjectionMetadata.InjectedField injectedField : metadata.getInjectedFields()) {
+            //依赖的bean还没有创建时当场创建，一次就能注入完整
+            //@Lazy的注入点注入代理，第一次调用时才去获取
+            //request作用域的bean注入代理，每次调用时获取当前请求中的实例
+            Object dependency;
+            if (injectedField.isLazy()) {
+                dependency = buildLazyResolutionProxy(injectedField, true);
+            } else if (isRequestScopedProxyTarget(injectedField)) {
+                dependency = buildLazyResolutionProxy(injectedField, false);
+            } else {
+                dependency = resolveDependency(injectedField.getBeanName(), injectedField.getField().getName());
             }
-
-            Autowired autowired = field.getAnnotation(Autowired.class);
-            //拿到需要注入的类名
-            String autowiredBeanName = autowired.value().trim();
-            if ("".equals(autowiredBeanName)) {
-                autowiredBeanName = field.getType().getName();
+            try {
+                //将容器中的实例注入到成员变量中
+                injectedField.inject(target, dependency);
+            } catch (Throwable e) {
+                throw new Exception("Could not autowire field " + injectedField.getField() + " of bean \"" + beanName + "\"", e);
             }
+        }
+    }
+
+    private boolean isRequestScopedProxyTarget(InjectionMetadata.InjectedField injectedField) throws Exception {
+        if (!injectedField.getField().getType().isInterface()) {
+            return false;
+        }
+        String beanName = resolveBeanName(injectedField.getBeanName(), injectedField.getField().getName());
+        return beanName != null && this.beanDefinitionMap.get(beanName).isRequestScoped();
+    }
 
-            //强制访问该成员变量
-            field.setAccessible(true);
+    private Object buildLazyResolutionProxy(InjectionMetadata.InjectedField injectedField, boolean cacheTarget) {
+        Class<?> type = injectedField.getField().getType();
+        String name = injectedField.getBeanName();
+        String qualifier = injectedField.getField().getName();
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new LazyResolutionInvocationHandler(() -> resolveDependency(name, qualifier), cacheTarget));
+    }
+
+    private InjectionMetadata findInjectionMetadata(Class<?> clazz) {
+        InjectionMetadata metadata = this.injectionMetadataCache.get(clazz);
+        if (metadata != null) {
+            return metadata;
+        }
+        metadata = this.snapshotRestored ? restoreInjectionMetadata(clazz) : null;
+        if (metadata == null) {
+            metadata = InjectionMetadata.forClass(clazz);
+        }
+        InjectionMetadata existing = this.injectionMetadataCache.putIfAbsent(clazz, metadata);
+        return existing == null ? metadata : existing;
+    }
 
+    /**
+     * 用快照中记录的声明类和变量名找到注入点，不再遍历成员变量和注解，找不到时返回null
+     */
+    private InjectionMetadata restoreInjectionMetadata(Class<?> clazz) {
+        StartupSnapshot.InjectionPoints injectionPoints = this.startupSnapshot.getInjectionPoints().get(clazz.getName());
+        if (injectionPoints == null) {
+            return null;
+        }
+        List<Field> fields = new ArrayList<>(injectionPoints.getFields().size());
+        for (String[] field : injectionPoints.getFields()) {
+            Class<?> declaringClass = clazz;
+            while (declaringClass != null && !declaringClass.getName().equals(field[0])) {
+                declaringClass = declaringClass.getSuperclass();
+            }
             try {
-                if (this.factoryBeanInstanceCache.get(autowiredBeanName) == null) {
-                    continue;
+                if (declaringClass == null) {
+                    return null;
                 }
-                //将容器中的实例注入到成员变量中
-                field.set(beanWrapper.getWrappedInstance(), this.factoryBeanInstanceCache.get(autowiredBeanName).getWrappedInstance());
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                fields.add(declaringClass.getDeclaredField(field[1]));
+            } catch (NoSuchFieldException e) {
+                return null;
             }
         }
+        return InjectionMetadata.forFields(clazz, fields);
     }
 
     @Override
     public <T> T getBean(Class<T> requiredType) throws Exception {
-        return (T) getBean(requiredType.getName());
+        String beanName = resolveBeanName(requiredType.getName(), null);
+        if (beanName == null) {
+            throw new Exception("No qualifying bean of type '" + requiredType.getName() + "' available");
+        }
+        return (T) getBean(beanName);
+    }
+
+    /**
+     * 获取bean的类型，不会创建bean，没有这个bean时返回null
+     */
+    public Class<?> getType(String beanName) throws ClassNotFoundException {
+        BeanDefinition beanDefinition = this.beanDefinitionMap.get(beanName);
+        if (beanDefinition == null) {
+            return null;
+        }
+        return Class.forName(beanDefinition.getBeanClassName());
     }
 
     public String[] getBeanDefinitionNames() {
@@ -0,0 +1,52 @@
+package com.lqb.springframework.context.support;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * @Lazy注入点的代理，第一次调用方法时才获取真正的bean，之后直接调用
+ * 不缓存时每次调用都重新获取，用于request作用域的bean，每个请求拿到的是各自的实例
+ */
+class LazyResolutionInvocationHandler implements InvocationHandler {
+
+    /**获取真正的bean*/
+    private final Callable<Object> targetSource;
+
+    /**是否缓存第一次获取到的bean*/
+    private final boolean cacheTarget;
+
+    private volatile Object target;
+
+    LazyResolutionInvocationHandler(Callable<Object> targetSource, boolean cacheTarget) {
+        this.targetSource = targetSource;
+        this.cacheTarget = cacheTarget;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(getTarget(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Object getTarget() throws Exception {
+        if (!this.cacheTarget) {
+            return this.targetSource.call();
+        }
+        Object target = this.target;
+        if (target == null) {
+            synchronized (this) {
+                target = this.target;
+                if (target == null) {
+                    target = this.targetSource.call();
+                    this.target = target;
+                }
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,109 @@
+package com.lqb.springframework.context.support;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * prototype bean的对象池，借出的实例用完后通过releaseBean归还，下次直接复用，不需要重新实例化和注入
+ * 每个线程先用自己的一个槽位，不需要竞争；槽位被占用时再放到共享的有界队列，队列满了直接丢弃
+ * 池中没有空闲实例时新建，所以借出的实例数量不受限制
+ * 归还的实例会原样再借出，bean自己的状态需要bean自己在用完时清理
+ * 只接受借出后还没有归还的实例，重复归还或者不是从池中借出的实例直接忽略，避免同一个实例被借给两个使用者
+ * 借出的实例用弱引用记录，没有归还就被回收的实例不会一直占用内存
+ */
+class PrototypePool {
+
+    /**创建新实例*/
+    private final Callable<Object> factory;
+
+    /**当前线程的槽位*/
+    private final ThreadLocal<Object> local = new ThreadLocal<>();
+
+    /**共享的空闲实例*/
+    private final BlockingQueue<Object> shared;
+
+    /**已经借出还没有归还的实例，按对象identity比较*/
+    private final Set<BorrowedKey> borrowed = ConcurrentHashMap.newKeySet();
+
+    /**借出后没有归还就被回收的实例*/
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    PrototypePool(int poolSize, Callable<Object> factory) {
+        this.factory = factory;
+        this.shared = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    Object borrow() throws Exception {
+        expungeCollected();
+        Object instance = local.get();
+        if (instance != null) {
+            local.remove();
+        } else {
+            instance = shared.poll();
+            if (instance == null) {
+                instance = factory.call();
+            }
+        }
+        borrowed.add(new BorrowedKey(instance, collected));
+        return instance;
+    }
+
+    /**
+     * 归还一个实例，不是借出中的实例返回false
+     */
+    boolean release(Object instance) {
+        expungeCollected();
+        if (!borrowed.remove(new BorrowedKey(instance, null))) {
+            return false;
+        }
+        if (local.get() == null) {
+            local.set(instance);
+            return true;
+        }
+        shared.offer(instance);
+        return true;
+    }
+
+    private void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            borrowed.remove(reference);
+        }
+    }
+
+    /**
+     * 借出的实例，按identity比较，不受bean自己的equals、hashCode影响
+     */
+    private static class BorrowedKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        BorrowedKey(Object instance, ReferenceQueue<Object> queue) {
+            super(instance, queue);
+            this.hash = System.identityHashCode(instance);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BorrowedKey)) {
+                return false;
+            }
+            Object instance = get();
+            return instance != null && instance == ((BorrowedKey) o).get();
+        }
+    }
+}
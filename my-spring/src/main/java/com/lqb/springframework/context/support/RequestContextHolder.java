@@ -0,0 +1,34 @@
+package com.lqb.springframework.context.support;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 保存当前线程正在处理的请求中创建的request作用域的bean
+ * DispatcherServlet在处理请求前绑定，处理完之后清除
+ */
+public class RequestContextHolder {
+
+    private static final ThreadLocal<Map<String, Object>> REQUEST_BEANS = new ThreadLocal<>();
+
+    /**
+     * 开始处理一个请求
+     */
+    public static void bindRequest() {
+        REQUEST_BEANS.set(new HashMap<>());
+    }
+
+    /**
+     * 请求处理完毕，这个请求中创建的bean随之丢弃
+     */
+    public static void resetRequest() {
+        REQUEST_BEANS.remove();
+    }
+
+    /**
+     * 当前请求中的bean，key为全类名，没有绑定请求时返回null
+     */
+    static Map<String, Object> getRequestBeans() {
+        return REQUEST_BEANS.get();
+    }
+}
@@ -0,0 +1,55 @@
+package com.lqb.springframework.context.support;
+
+import java.lang.reflect.Method;
+
+/**
+ * 启动快照中保存的一条路由：controller的beanName、处理方法的方法名和参数类型名、URL正则
+ * 恢复时不需要再遍历controller的方法和注解
+ */
+public class RouteDefinition {
+
+    private final String beanName;
+
+    private final String methodName;
+
+    /**参数类型的全类名*/
+    private final String[] parameterTypes;
+
+    /**URL正则*/
+    private final String pattern;
+
+    public RouteDefinition(String beanName, Method method, String pattern) {
+        this(beanName, method.getName(), StartupSnapshot.typeNames(method.getParameterTypes()), pattern);
+    }
+
+    RouteDefinition(String beanName, String methodName, String[] parameterTypes, String pattern) {
+        this.beanName = beanName;
+        this.methodName = methodName;
+        this.parameterTypes = parameterTypes;
+        this.pattern = pattern;
+    }
+
+    public String getBeanName() {
+        return this.beanName;
+    }
+
+    public String getMethodName() {
+        return this.methodName;
+    }
+
+    public String[] getParameterTypes() {
+        return this.parameterTypes;
+    }
+
+    public String getPattern() {
+        return this.pattern;
+    }
+
+    /**
+     * 在controller的类中找到处理方法
+     */
+    public Method resolveMethod(Class<?> controllerClass) throws ClassNotFoundException, NoSuchMethodException {
+        return controllerClass.getMethod(this.methodName,
+                StartupSnapshot.resolveTypes(this.parameterTypes, controllerClass.getClassLoader()));
+    }
+}
@@ -0,0 +1,220 @@
+package com.lqb.springframework.context.support;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 记录容器启动的耗时，按阶段汇总，并记录每个bean的创建耗时和内存分配
+ * bean的创建是嵌套的（创建一个bean时会先创建它依赖的bean），每个bean同时记录包括依赖在内的总耗时和扣除依赖之后自身的耗时
+ * 多线程创建时等待其他线程创建同一个单例（单例锁）的时间也从自身耗时中扣除，单独计入lockWait阶段
+ * 启动完成（finish）之后不再记录，运行期创建的prototype、request作用域的bean不会计入
+ */
+public class StartupProfiler {
+
+    /**bean创建过程中的阶段*/
+    static final String INSTANTIATE = "instantiate";
+
+    static final String POPULATE = "populate";
+
+    static final String PROXY = "proxy";
+
+    /**等待单例锁*/
+    static final String LOCK_WAIT = "lockWait";
+
+    /**HotSpot支持按线程统计分配的字节数，不支持时为null*/
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = allocationMXBean();
+
+    private final long startNanos = System.nanoTime();
+
+    private volatile long endNanos;
+
+    private volatile boolean active = true;
+
+    /**阶段名 -> [总耗时(纳秒), 次数]，按第一次出现的顺序*/
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+    private final List<StartupReport.BeanTiming> beans = new ArrayList<>();
+
+    /**当前线程正在创建的bean*/
+    private final ThreadLocal<Deque<BeanStep>> beanSteps = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private volatile String failure;
+
+    private final BeanStep disabledStep = new BeanStep(null, null, false);
+
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (mxBean.isThreadAllocatedMemorySupported() && mxBean.isThreadAllocatedMemoryEnabled()) {
+                    return mxBean;
+                }
+            }
+        } catch (Throwable e) {
+            //非HotSpot虚拟机，不统计内存分配
+        }
+        return null;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION_MX_BEAN == null ? -1 : ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * 记录一个阶段的耗时，start为System.nanoTime()
+     */
+    public void recordPhase(String phase, long start) {
+        addPhase(phase, System.nanoTime() - start);
+    }
+
+    private void addPhase(String phase, long nanos) {
+        synchronized (this.phases) {
+            long[] stat = this.phases.computeIfAbsent(phase, k -> new long[2]);
+            stat[0] += nanos;
+            stat[1]++;
+        }
+    }
+
+    /**
+     * 启动失败时记录异常
+     */
+    public void recordFailure(Throwable e) {
+        this.failure = e.toString();
+    }
+
+    /**
+     * 记录等待单例锁的时间，从当前线程正在创建的bean的自身耗时中扣除
+     * 只在拿不到锁、确实被阻塞时调用，没有竞争的创建不会记录
+     */
+    void recordLockWait(long nanos) {
+        if (!this.active) {
+            return;
+        }
+        addPhase(LOCK_WAIT, nanos);
+        BeanStep step = this.beanSteps.get().peek();
+        if (step != null) {
+            step.childNanos += nanos;
+        }
+    }
+
+    /**
+     * 开始创建一个bean，启动完成之后返回一个什么都不记录的BeanStep
+     */
+    BeanStep beginBean(String beanName) {
+        if (!this.active) {
+            return this.disabledStep;
+        }
+        BeanStep step = new BeanStep(beanName, this.beanSteps.get().peek(), true);
+        this.beanSteps.get().push(step);
+        return step;
+    }
+
+    /**
+     * 启动完成，之后不再记录bean
+     */
+    public void finish() {
+        this.endNanos = System.nanoTime();
+        this.active = false;
+    }
+
+    public StartupReport getReport() {
+        long end = this.active ? System.nanoTime() : this.endNanos;
+        List<StartupReport.Phase> phaseList = new ArrayList<>();
+        synchronized (this.phases) {
+            for (Map.Entry<String, long[]> entry : this.phases.entrySet()) {
+                phaseList.add(new StartupReport.Phase(entry.getKey(), entry.getValue()[0], (int) entry.getValue()[1]));
+            }
+        }
+        List<StartupReport.BeanTiming> beanList;
+        synchronized (this.beans) {
+            beanList = new ArrayList<>(this.beans);
+        }
+        return new StartupReport(end - this.startNanos, !this.active, this.failure, phaseList, beanList);
+    }
+
+    /**
+     * 一个bean的创建过程，依次进入instantiate、populate、proxy阶段，每个阶段只计算自身的耗时
+     */
+    class BeanStep {
+
+        private final String beanName;
+
+        private final BeanStep parent;
+
+        private final boolean enabled;
+
+        private final long start;
+
+        private final long startBytes;
+
+        /**依赖的bean的总耗时（包括等待单例锁的时间）和分配的字节数*/
+        private long childNanos;
+
+        private long childBytes;
+
+        private String phase;
+
+        private long phaseStart;
+
+        private long phaseChildNanos;
+
+        private BeanStep(String beanName, BeanStep parent, boolean enabled) {
+            this.beanName = beanName;
+            this.parent = parent;
+            this.enabled = enabled;
+            this.start = enabled ? System.nanoTime() : 0;
+            this.startBytes = enabled ? allocatedBytes() : 0;
+        }
+
+        /**
+         * 进入下一个阶段，上一个阶段结束
+         */
+        void phase(String phase) {
+            if (!this.enabled) {
+                return;
+            }
+            closePhase();
+            this.phase = phase;
+            this.phaseStart = System.nanoTime();
+            this.phaseChildNanos = this.childNanos;
+        }
+
+        private void closePhase() {
+            if (this.phase != null) {
+                addPhase(this.phase, System.nanoTime() - this.phaseStart - (this.childNanos - this.phaseChildNanos));
+                this.phase = null;
+            }
+        }
+
+        void end() {
+            if (!this.enabled) {
+                return;
+            }
+            closePhase();
+            beanSteps.get().pop();
+
+            long total = System.nanoTime() - this.start;
+            long bytes = this.startBytes < 0 ? -1 : allocatedBytes() - this.startBytes;
+            if (this.parent != null) {
+                this.parent.childNanos += total;
+                this.parent.childBytes += Math.max(bytes, 0);
+            }
+            StartupReport.BeanTiming timing = new StartupReport.BeanTiming(this.beanName, Thread.currentThread().getName(),
+                    total, total - this.childNanos, bytes < 0 ? -1 : bytes - this.childBytes);
+            synchronized (beans) {
+                beans.add(timing);
+            }
+        }
+    }
+}
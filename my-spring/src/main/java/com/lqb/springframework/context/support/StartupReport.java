@@ -0,0 +1,134 @@
+package com.lqb.springframework.context.support;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 容器启动耗时报告，时间单位为纳秒，不支持统计内存分配时字节数为-1
+ */
+@Getter
+public class StartupReport {
+
+    /**从创建容器到启动完成（或者到生成报告时）的总耗时*/
+    private final long totalNanos;
+
+    /**启动是否已经完成*/
+    private final boolean finished;
+
+    /**启动过程中的异常，没有为null*/
+    private final String failure;
+
+    /**各阶段的耗时，按第一次出现的顺序*/
+    private final List<Phase> phases;
+
+    /**每个bean的创建耗时，按自身耗时从大到小排序*/
+    private final List<BeanTiming> beans;
+
+    StartupReport(long totalNanos, boolean finished, String failure, List<Phase> phases, List<BeanTiming> beans) {
+        this.totalNanos = totalNanos;
+        this.finished = finished;
+        this.failure = failure;
+        this.phases = phases;
+        this.beans = new ArrayList<>(beans);
+        this.beans.sort(Comparator.comparingLong(BeanTiming::getSelfNanos).reversed());
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"totalMillis\": ").append(millis(totalNanos)).append(",\n");
+        sb.append("  \"finished\": ").append(finished).append(",\n");
+        sb.append("  \"failure\": ").append(failure == null ? "null" : quote(failure)).append(",\n");
+        sb.append("  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            sb.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(quote(phase.getName()))
+                    .append(", \"millis\": ").append(millis(phase.getNanos()))
+                    .append(", \"count\": ").append(phase.getCount()).append('}');
+        }
+        sb.append(phases.isEmpty() ? "],\n" : "\n  ],\n");
+        sb.append("  \"beans\": [");
+        for (int i = 0; i < beans.size(); i++) {
+            BeanTiming bean = beans.get(i);
+            sb.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(quote(bean.getBeanName()))
+                    .append(", \"thread\": ").append(quote(bean.getThread()))
+                    .append(", \"totalMillis\": ").append(millis(bean.getTotalNanos()))
+                    .append(", \"selfMillis\": ").append(millis(bean.getSelfNanos()))
+                    .append(", \"selfAllocatedBytes\": ").append(bean.getSelfAllocatedBytes()).append('}');
+        }
+        sb.append(beans.isEmpty() ? "]\n" : "\n  ]\n");
+        return sb.append("}\n").toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 一个阶段，bean创建过程中的阶段（instantiate、populate、proxy）是所有bean的合计，不包括依赖的bean
+     */
+    @Getter
+    public static class Phase {
+
+        private final String name;
+
+        private final long nanos;
+
+        private final int count;
+
+        Phase(String name, long nanos, int count) {
+            this.name = name;
+            this.nanos = nanos;
+            this.count = count;
+        }
+    }
+
+    /**
+     * 一个bean的创建耗时
+     */
+    @Getter
+    public static class BeanTiming {
+
+        private final String beanName;
+
+        /**创建这个bean的线程*/
+        private final String thread;
+
+        /**包括创建依赖的bean在内的总耗时*/
+        private final long totalNanos;
+
+        /**扣除依赖的bean之后自身的耗时*/
+        private final long selfNanos;
+
+        /**扣除依赖的bean之后自身分配的字节数*/
+        private final long selfAllocatedBytes;
+
+        BeanTiming(String beanName, String thread, long totalNanos, long selfNanos, long selfAllocatedBytes) {
+            this.beanName = beanName;
+            this.thread = thread;
+            this.totalNanos = totalNanos;
+            this.selfNanos = selfNanos;
+            this.selfAllocatedBytes = selfAllocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package com.lqb.springframework.context.support;
+
+import com.lqb.springframework.beans.config.BeanDefinition;
+import com.lqb.springframework.beans.support.ComponentIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 启动快照，保存上一次启动时解析好的容器模型：BeanDefinition、类型索引、提前初始化的依赖关系、
+ * 每个bean类的注入点、切面匹配到的方法、MVC的路由表
+ * 以classpath指纹为key，指纹没有变化时直接恢复，不需要扫描、解析class、匹配切点和建立索引
+ * 注入点、方法、路由只按声明类、名字和参数类型名保存，用到时才解析成Field、Method
+ *
+ * 指纹包括配置文件的内容和bean索引文件；扫描包所在模块没有bean索引时还包括扫描包下每个文件的大小和修改时间
+ * 另外记录快照用到的每个类（bean类、它们的父类和接口，包括扫描包以外的，以及切面类）的class文件或者所在jar包，
+ * 恢复时逐个检查大小和修改时间，有bean索引时启动只需要检查这些文件，不需要遍历扫描包
+ */
+class StartupSnapshot {
+
+    private static final int MAGIC = 0x4D53534E;
+
+    private static final int VERSION = 2;
+
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                float.class, double.class, void.class}) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    /**生成快照时的classpath指纹*/
+    private final String fingerprint;
+
+    private final List<BeanDefinition> beanDefinitions;
+
+    /**类型的全类名 -> beanName*/
+    private final Map<String, String[]> beanNamesByType;
+
+    /**需要提前初始化的beanName -> 它依赖的beanName*/
+    private final Map<String, Set<String>> dependencies;
+
+    /**快照用到的类所在的文件 -> {大小, 修改时间}*/
+    private final Map<String, long[]> classFiles;
+
+    /**bean类的全类名 -> 注入点*/
+    private final Map<String, InjectionPoints> injectionPoints;
+
+    /**bean类的全类名 -> 切面匹配结果*/
+    private final Map<String, AopMatch> aopMatches;
+
+    /**路由表，没有初始化过MVC时为null*/
+    private List<RouteDefinition> routes;
+
+    StartupSnapshot(String fingerprint, List<BeanDefinition> beanDefinitions,
+                    Map<String, String[]> beanNamesByType, Map<String, Set<String>> dependencies,
+                    Map<String, long[]> classFiles, Map<String, InjectionPoints> injectionPoints,
+                    Map<String, AopMatch> aopMatches) {
+        this.fingerprint = fingerprint;
+        this.beanDefinitions = beanDefinitions;
+        this.beanNamesByType = beanNamesByType;
+        this.dependencies = dependencies;
+        this.classFiles = classFiles;
+        this.injectionPoints = injectionPoints;
+        this.aopMatches = aopMatches;
+    }
+
+    String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    List<BeanDefinition> getBeanDefinitions() {
+        return this.beanDefinitions;
+    }
+
+    Map<String, String[]> getBeanNamesByType() {
+        return this.beanNamesByType;
+    }
+
+    Map<String, Set<String>> getDependencies() {
+        return this.dependencies;
+    }
+
+    Map<String, InjectionPoints> getInjectionPoints() {
+        return this.injectionPoints;
+    }
+
+    Map<String, AopMatch> getAopMatches() {
+        return this.aopMatches;
+    }
+
+    List<RouteDefinition> getRoutes() {
+        return this.routes;
+    }
+
+    void setRoutes(List<RouteDefinition> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * 快照用到的类文件都没有变化，只检查文件的大小和修改时间，不加载类
+     */
+    boolean isUpToDate() {
+        for (Map.Entry<String, long[]> entry : this.classFiles.entrySet()) {
+            File file = new File(entry.getKey());
+            if (file.length() != entry.getValue()[0] || file.lastModified() != entry.getValue()[1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记录一个类以及它所有父类、接口的class文件，JDK中的类不记录
+     */
+    static void addClassFiles(Map<String, long[]> classFiles, Class<?> type) throws IOException {
+        if (type == null || type.getClassLoader() == null) {
+            return;
+        }
+        URL url = type.getClassLoader().getResource(type.getName().replace('.', '/') + ".class");
+        File file = url == null ? null : locationFile(url);
+        //同一个jar包中的类只记录一次
+        if (file != null && !classFiles.containsKey(file.getPath())) {
+            classFiles.put(file.getPath(), new long[]{file.length(), file.lastModified()});
+        }
+        addClassFiles(classFiles, type.getSuperclass());
+        for (Class<?> i : type.getInterfaces()) {
+            addClassFiles(classFiles, i);
+        }
+    }
+
+    /**
+     * 参数类型的类名，和Class.getName()一致
+     */
+    static String[] typeNames(Class<?>[] types) {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].getName();
+        }
+        return names;
+    }
+
+    static Class<?>[] resolveTypes(String[] names, ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?>[] types = new Class<?>[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Class<?> primitive = PRIMITIVE_TYPES.get(names[i]);
+            types[i] = primitive != null ? primitive : Class.forName(names[i], false, classLoader);
+        }
+        return types;
+    }
+
+    /**
+     * 计算classpath指纹，只读取文件的大小和修改时间，不读取内容
+     * 有bean索引时新增的bean会改变索引文件，不需要遍历扫描包；没有时遍历扫描包下的所有文件
+     */
+    static String fingerprint(Properties config, String scanPackage, ClassLoader classLoader,
+                              boolean indexed) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        update(digest, "v" + VERSION);
+        //配置文件，按key排序
+        for (Map.Entry<Object, Object> entry : new TreeMap<>(config).entrySet()) {
+            update(digest, entry.getKey() + "=" + entry.getValue());
+        }
+        update(digest, indexed ? "indexed" : "scanned");
+        //扫描包所在的每一个classpath位置
+        Enumeration<URL> urls;
+        if (!indexed) {
+            urls = classLoader.getResources(scanPackage.replace('.', '/'));
+            while (urls.hasMoreElements()) {
+                updateLocation(digest, urls.nextElement());
+            }
+        }
+        //编译期生成的bean索引
+        urls = classLoader.getResources(ComponentIndex.COMPONENTS_RESOURCE_LOCATION);
+        while (urls.hasMoreElements()) {
+            updateLocation(digest, urls.nextElement());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void updateLocation(MessageDigest digest, URL url) throws IOException {
+        update(digest, url.toString());
+        File file = locationFile(url);
+        if (file != null) {
+            updateFile(digest, file);
+        }
+    }
+
+    /**
+     * classpath资源所在的文件，jar包中的资源返回整个jar包
+     */
+    private static File locationFile(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            return new File(url.getFile());
+        }
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            return new File(((JarURLConnection) connection).getJarFileURL().getFile());
+        }
+        return null;
+    }
+
+    private static void updateFile(MessageDigest digest, File file) {
+        update(digest, file.getName() + ":" + file.length() + ":" + file.lastModified());
+        File[] files = file.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (File child : files) {
+            updateFile(digest, child);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * 读取快照，文件不存在或者格式不对返回null
+     */
+    static StartupSnapshot read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String fingerprint = in.readUTF();
+
+            int count = in.readInt();
+            List<BeanDefinition> beanDefinitions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BeanDefinition beanDefinition = new BeanDefinition();
+                beanDefinition.setFactoryBeanName(in.readUTF());
+                beanDefinition.setBeanClassName(in.readUTF());
+                beanDefinition.setLazyInit(in.readBoolean());
+                beanDefinition.setPrimary(in.readBoolean());
+                beanDefinition.setScope(in.readUTF());
+                beanDefinition.setPoolSize(in.readInt());
+                beanDefinitions.add(beanDefinition);
+            }
+
+            count = in.readInt();
+            Map<String, String[]> beanNamesByType = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String typeName = in.readUTF();
+                String[] beanNames = new String[in.readInt()];
+                for (int j = 0; j < beanNames.length; j++) {
+                    beanNames[j] = in.readUTF();
+                }
+                beanNamesByType.put(typeName, beanNames);
+            }
+
+            count = in.readInt();
+            Map<String, Set<String>> dependencies = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                String beanName = in.readUTF();
+                int size = in.readInt();
+                Set<String> beanDependencies = new TreeSet<>();
+                for (int j = 0; j < size; j++) {
+                    beanDependencies.add(in.readUTF());
+                }
+                dependencies.put(beanName, beanDependencies);
+            }
+
+            count = in.readInt();
+            Map<String, long[]> classFiles = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                classFiles.put(in.readUTF(), new long[]{in.readLong(), in.readLong()});
+            }
+
+            count = in.readInt();
+            Map<String, InjectionPoints> injectionPoints = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                String[] constructorParameterTypes = in.readBoolean() ? readStrings(in) : null;
+                int size = in.readInt();
+                List<String[]> fields = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    fields.add(new String[]{in.readUTF(), in.readUTF()});
+                }
+                injectionPoints.put(className, new InjectionPoints(constructorParameterTypes, fields));
+            }
+
+            count = in.readInt();
+            Map<String, AopMatch> aopMatches = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String className = in.readUTF();
+                int[] advisors = readInts(in);
+                int size = in.readInt();
+                List<MethodMatch> methods = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    methods.add(new MethodMatch(in.readUTF(), readStrings(in), readInts(in)));
+                }
+                aopMatches.put(className, new AopMatch(advisors, methods));
+            }
+
+            StartupSnapshot snapshot = new StartupSnapshot(fingerprint, beanDefinitions, beanNamesByType, dependencies,
+                    classFiles, injectionPoints, aopMatches);
+            if (in.readBoolean()) {
+                count = in.readInt();
+                List<RouteDefinition> routes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    routes.add(new RouteDefinition(in.readUTF(), in.readUTF(), readStrings(in), in.readUTF()));
+                }
+                snapshot.setRoutes(routes);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 先写到临时文件再替换，多个进程同时启动时不会读到写了一半的快照
+     */
+    void write(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(this.fingerprint);
+
+                out.writeInt(this.beanDefinitions.size());
+                for (BeanDefinition beanDefinition : this.beanDefinitions) {
+                    out.writeUTF(beanDefinition.getFactoryBeanName());
+                    out.writeUTF(beanDefinition.getBeanClassName());
+                    out.writeBoolean(beanDefinition.isLazyInit());
+                    out.writeBoolean(beanDefinition.isPrimary());
+                    out.writeUTF(beanDefinition.getScope());
+                    out.writeInt(beanDefinition.getPoolSize());
+                }
+
+                out.writeInt(this.beanNamesByType.size());
+                for (Map.Entry<String, String[]> entry : this.beanNamesByType.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    for (String beanName : entry.getValue()) {
+                        out.writeUTF(beanName);
+                    }
+                }
+
+                out.writeInt(this.dependencies.size());
+                for (Map.Entry<String, Set<String>> entry : this.dependencies.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String dependency : entry.getValue()) {
+                        out.writeUTF(dependency);
+                    }
+                }
+
+                out.writeInt(this.classFiles.size());
+                for (Map.Entry<String, long[]> entry : this.classFiles.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+
+                out.writeInt(this.injectionPoints.size());
+                for (Map.Entry<String, InjectionPoints> entry : this.injectionPoints.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    String[] constructorParameterTypes = entry.getValue().getConstructorParameterTypes();
+                    out.writeBoolean(constructorParameterTypes != null);
+                    if (constructorParameterTypes != null) {
+                        writeStrings(out, constructorParameterTypes);
+                    }
+                    out.writeInt(entry.getValue().getFields().size());
+                    for (String[] field : entry.getValue().getFields()) {
+                        out.writeUTF(field[0]);
+                        out.writeUTF(field[1]);
+                    }
+                }
+
+                out.writeInt(this.aopMatches.size());
+                for (Map.Entry<String, AopMatch> entry : this.aopMatches.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeInts(out, entry.getValue().getAdvisors());
+                    out.writeInt(entry.getValue().getMethods().size());
+                    for (MethodMatch method : entry.getValue().getMethods()) {
+                        out.writeUTF(method.getName());
+                        writeStrings(out, method.getParameterTypes());
+                        writeInts(out, method.getAdvisors());
+                    }
+                }
+
+                out.writeBoolean(this.routes != null);
+                if (this.routes != null) {
+                    out.writeInt(this.routes.size());
+                    for (RouteDefinition route : this.routes) {
+                        out.writeUTF(route.getBeanName());
+                        out.writeUTF(route.getMethodName());
+                        writeStrings(out, route.getParameterTypes());
+                        out.writeUTF(route.getPattern());
+                    }
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * 一个bean类的注入点
+     */
+    static class InjectionPoints {
+
+        /**实例化用的构造器的参数类型，没有可用的构造器时为null*/
+        private final String[] constructorParameterTypes;
+
+        /**@Autowired成员变量，{声明类的全类名, 变量名}，父类的在前*/
+        private final List<String[]> fields;
+
+        InjectionPoints(String[] constructorParameterTypes, List<String[]> fields) {
+            this.constructorParameterTypes = constructorParameterTypes;
+            this.fields = fields;
+        }
+
+        String[] getConstructorParameterTypes() {
+            return this.constructorParameterTypes;
+        }
+
+        List<String[]> getFields() {
+            return this.fields;
+        }
+    }
+
+    /**
+     * 一个bean类的切面匹配结果，切面用排好序的切面列表中的下标表示
+     */
+    static class AopMatch {
+
+        /**类符合切点的切面，为空表示不需要代理*/
+        private final int[] advisors;
+
+        /**需要拦截的方法*/
+        private final List<MethodMatch> methods;
+
+        AopMatch(int[] advisors, List<MethodMatch> methods) {
+            this.advisors = advisors;
+            this.methods = methods;
+        }
+
+        int[] getAdvisors() {
+            return this.advisors;
+        }
+
+        List<MethodMatch> getMethods() {
+            return this.methods;
+        }
+    }
+
+    /**
+     * 需要拦截的方法，按方法名和参数类型名保存
+     */
+    static class MethodMatch {
+
+        private final String name;
+
+        private final String[] parameterTypes;
+
+        /**符合这个方法的切面，按优先级排序*/
+        private final int[] advisors;
+
+        MethodMatch(String name, String[] parameterTypes, int[] advisors) {
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.advisors = advisors;
+        }
+
+        String getName() {
+            return this.name;
+        }
+
+        String[] getParameterTypes() {
+            return this.parameterTypes;
+        }
+
+        int[] getAdvisors() {
+            return this.advisors;
+        }
+    }
+}
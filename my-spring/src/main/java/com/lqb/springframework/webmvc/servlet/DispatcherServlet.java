@@ -4,17 +4,18 @@ package com.lqb.springframework.webmvc.servlet;
 import com.lqb.springframework.annotation.Controller;
 import com.lqb.springframework.annotation.RequestMapping;
 import com.lqb.springframework.context.support.DefaultApplicationContext;
+import com.lqb.springframework.context.support.RequestContextHolder;
+import com.lqb.springframework.context.support.RouteDefinition;
+import com.lqb.springframework.context.support.StartupProfiler;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class DispatcherServlet extends HttpServlet {
@@ -22,10 +23,19 @@ public class DispatcherServlet extends HttpServlet {
     /**配置文件地址，从web.xml中获取*/
     private static final String CONTEXT_CONFIG_LOCATION = "contextConfigLocation";
 
+    /**模板热更新的检查间隔，从配置文件中获取*/
+    private static final String TEMPLATE_RELOAD_INTERVAL = "templateReloadInterval";
+
+    /**是否开启模板流式渲染，从配置文件中获取*/
+    private static final String TEMPLATE_STREAMING = "templateStreaming";
+
     private DefaultApplicationContext context;
 
     private List<HandlerMapping> handlerMappings = new ArrayList<>();
 
+    /**URL路由索引，由handlerMappings构建*/
+    private HandlerMappingIndex handlerMappingIndex = new HandlerMappingIndex();
+
     private Map<HandlerMapping, HandlerAdapter> handlerAdapters = new HashMap<>();
 
     private List<ViewResolver> viewResolvers = new ArrayList<>();
@@ -37,6 +47,8 @@ public class DispatcherServlet extends HttpServlet {
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        //绑定当前请求，request作用域的bean在请求结束后丢弃
+        RequestContextHolder.bindRequest();
         try {
             this.doDispatch(req, resp);
         } catch (Exception e) {
@@ -44,6 +56,8 @@ public class DispatcherServlet extends HttpServlet {
                     + Arrays.toString(e.getStackTrace()).replaceAll("\\[|\\]", "")
                     .replaceAll(",\\s", "\r\n"));
             e.printStackTrace();
+        } finally {
+            RequestContextHolder.resetRequest();
         }
     }
 
@@ -74,21 +88,30 @@ public class DispatcherServlet extends HttpServlet {
 
         String url = req.getRequestURI();
         String contextPath = req.getContextPath();
-        url = url.replace(contextPath, "").replaceAll("/+", "/");
+        url = normalizePath(url.replace(contextPath, ""));
 
-        for (HandlerMapping handler : this.handlerMappings) {
-            try {
-                Matcher matcher = handler.getPattern().matcher(url);
-                //如果没有匹配上继续下一个匹配
-                if (!matcher.matches()) {
-                    continue;
-                }
-                return handler;
-            } catch (Exception e) {
-                throw e;
+        //通过路由索引查找，开销只和URL段数有关
+        return this.handlerMappingIndex.lookup(url);
+    }
+
+    /**
+     * 合并连续的/，等价于replaceAll("/+", "/")，避免每个请求都跑一遍正则
+     */
+    private String normalizePath(String url) {
+        if (!url.contains("//")) {
+            return url;
+        }
+        StringBuilder sb = new StringBuilder(url.length());
+        char prev = 0;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' && prev == '/') {
+                continue;
             }
+            sb.append(c);
+            prev = c;
         }
-        return null;
+        return sb.toString();
     }
 
     private HandlerAdapter getHandlerAdapter(HandlerMapping handler) {
@@ -135,26 +158,55 @@ public class DispatcherServlet extends HttpServlet {
         //初始化模板处理器
 
         //handlerMapping，必须实现
+        StartupProfiler profiler = context.getStartupProfiler();
+        long start = System.nanoTime();
         initHandlerMappings(context);
+        profiler.recordPhase("handlerMappings", start);
 
         //初始化参数适配器，必须实现
+        start = System.nanoTime();
         initHandlerAdapters(context);
+        profiler.recordPhase("handlerAdapters", start);
 
         //初始化异常拦截器
 
         //初始化视图预处理器
 
         //初始化视图转换器，必须实现
+        start = System.nanoTime();
         initViewResolvers(context);
+        profiler.recordPhase("viewResolvers", start);
 
         //参数缓存器
+
+        //启动耗时报告加上MVC组件的初始化
+        context.writeStartupReport();
     }
 
     private void initHandlerMappings(DefaultApplicationContext context) {
-        String[] beanNames = context.getBeanDefinitionNames();
+        //从启动快照恢复的路由表，不需要再遍历controller的方法和注解
+        List<RouteDefinition> restoredRoutes = context.getRestoredRoutes();
+        if (restoredRoutes != null) {
+            try {
+                for (RouteDefinition route : restoredRoutes) {
+                    Object controller = context.getBean(route.getBeanName());
+                    registerHandlerMapping(controller, route.resolveMethod(controller.getClass()), route.getPattern());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
 
+        String[] beanNames = context.getBeanDefinitionNames();
+        List<RouteDefinition> routes = new ArrayList<>();
         try {
             for (String beanName : beanNames) {
+                //先按类判断，不是controller的bean不需要在这里创建（懒加载、prototype、request作用域的bean）
+                Class<?> beanClass = context.getType(beanName);
+                if (beanClass == null || !beanClass.isAnnotationPresent(Controller.class)) {
+                    continue;
+                }
                 Object controller = context.getBean(beanName);
                 Class<?> clazz = controller.getClass();
                 if (!clazz.isAnnotationPresent(Controller.class)) {
@@ -180,32 +232,51 @@ public class DispatcherServlet extends HttpServlet {
                     //映射URL
                     RequestMapping requestMapping = method.getAnnotation(RequestMapping.class);
                     String regex = ("/" + baseUrl + "/" + requestMapping.value().replaceAll("\\*", ".*")).replaceAll("/+", "/");
-                    Pattern pattern = Pattern.compile(regex);
-
-                    this.handlerMappings.add(new HandlerMapping(controller, method, pattern));
-                    System.out.println("Mapped " + regex + "," + method);
+                    registerHandlerMapping(controller, method, regex);
+                    routes.add(new RouteDefinition(beanName, method, regex));
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
+            return;
         }
+        //路由表保存到启动快照中
+        context.registerRoutes(routes);
+    }
+
+    private void registerHandlerMapping(Object controller, Method method, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        HandlerMapping handlerMapping = new HandlerMapping(controller, method, pattern);
+        this.handlerMappings.add(handlerMapping);
+        this.handlerMappingIndex.register(handlerMapping);
+        System.out.println("Mapped " + regex + "," + method);
     }
 
     private void initHandlerAdapters(DefaultApplicationContext context) {
-        //一个HandlerMapping对应一个HandlerAdapter
+        //一个HandlerMapping对应一个HandlerAdapter，创建时解析好参数绑定计划
         for (HandlerMapping handlerMapping : this.handlerMappings) {
-            this.handlerAdapters.put(handlerMapping, new HandlerAdapter());
+            this.handlerAdapters.put(handlerMapping, new HandlerAdapter(handlerMapping));
         }
     }
 
     private void initViewResolvers(DefaultApplicationContext context) {
         //配置文件中拿到模板的存放目录
         String templateRoot = context.getConfig().getProperty("templateRoot");
-        String templateRootPath = this.getClass().getClassLoader().getResource(templateRoot).getFile();
-        File templateRootDir = new File(templateRootPath);
-        String[] templates = templateRootDir.list();
-        for (int i = 0; i < templates.length; i ++) {
-            this.viewResolvers.add(new ViewResolver(templateRoot));
+        ViewResolver viewResolver = new ViewResolver(templateRoot);
+        viewResolver.setStreaming(Boolean.parseBoolean(context.getConfig().getProperty(TEMPLATE_STREAMING)));
+
+        //配置了templateReloadInterval（毫秒）则开启模板热更新
+        String reloadInterval = context.getConfig().getProperty(TEMPLATE_RELOAD_INTERVAL);
+        if (reloadInterval != null && !"".equals(reloadInterval.trim())) {
+            viewResolver.enableReload(Long.parseLong(reloadInterval.trim()));
+        }
+        this.viewResolvers.add(viewResolver);
+    }
+
+    @Override
+    public void destroy() {
+        for (ViewResolver viewResolver : this.viewResolvers) {
+            viewResolver.destroy();
         }
     }
 }
@@ -5,96 +5,133 @@ import com.lqb.springframework.annotation.RequestParam;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.lang.annotation.Annotation;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.reflect.Method;
 
 public class HandlerAdapter {
 
-    ModelAndView handle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        HandlerMapping handlerMapping = (HandlerMapping) handler;
+    /**对应的HandlerMapping*/
+    private final HandlerMapping handlerMapping;
+
+    /**参数绑定计划，下标和controller方法的形参一一对应，为null表示该参数不绑定*/
+    private final ArgumentResolver[] argumentResolvers;
 
-        //把方法的形参列表和request的参数列表所在顺序进行一一对应
-        Map<String, Integer> paramIndexMapping = new HashMap<>();
+    /**controller方法是否返回ModelAndView*/
+    private final boolean returnsModelAndView;
 
+    public HandlerAdapter(HandlerMapping handlerMapping) {
+        this.handlerMapping = handlerMapping;
+        this.argumentResolvers = buildArgumentResolvers(handlerMapping.getMethod());
+        this.returnsModelAndView = handlerMapping.getMethod().getReturnType() == ModelAndView.class;
+    }
+
+    /**
+     * 启动时解析一次方法的形参，生成参数绑定计划
+     */
+    private static ArgumentResolver[] buildArgumentResolvers(Method method) {
         //提取方法中加了注解的参数
         //把方法上的注解拿到，得到的是一个二维数组
         //因为一个参数可以有多个注解，而一个方法又有多个参数
-        Annotation[][] pa = handlerMapping.getMethod().getParameterAnnotations();
-        for (int i = 0; i < pa.length; i++) {
+        Annotation[][] pa = method.getParameterAnnotations();
+        Class<?>[] paramsTypes = method.getParameterTypes();
+        ArgumentResolver[] resolvers = new ArgumentResolver[paramsTypes.length];
+
+        for (int i = 0; i < paramsTypes.length; i++) {
+            Class<?> type = paramsTypes[i];
+            //提取方法中的request和response参数
+            if (type == HttpServletRequest.class) {
+                resolvers[i] = RequestResolver.INSTANCE;
+                continue;
+            }
+            if (type == HttpServletResponse.class) {
+                resolvers[i] = ResponseResolver.INSTANCE;
+                continue;
+            }
             for (Annotation a : pa[i]) {
                 if (a instanceof RequestParam) {
                     String paramName = ((RequestParam) a).value();
                     if (!"".equals(paramName.trim())) {
-                        paramIndexMapping.put(paramName, i);
+                        resolvers[i] = new RequestParamResolver(paramName, type);
                     }
                 }
             }
         }
+        return resolvers;
+    }
 
-        //提取方法中的request和response参数
-        Class<?>[] paramsTypes = handlerMapping.getMethod().getParameterTypes();
-        for (int i = 0; i < paramsTypes.length; i++) {
-            Class<?> type = paramsTypes[i];
-            if (type == HttpServletRequest.class || type == HttpServletResponse.class) {
-                paramIndexMapping.put(type.getName(), i);
-            }
-        }
-
-        //获得方法的形参列表
-        Map<String, String[]> params = request.getParameterMap();
-
-        //controller的方法实参列表
-        Object[] paramValues = new Object[paramsTypes.length];
-
-        for (Map.Entry<String, String[]> parm : params.entrySet()) {
-            String value = Arrays.toString(parm.getValue()).replaceAll("\\[|\\]", "")
-                    .replaceAll("\\s", ",");
-
-            if (!paramIndexMapping.containsKey(parm.getKey())) {
-                continue;
+    ModelAndView handle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        //controller的方法实参列表，按绑定计划逐个填充
+        ArgumentResolver[] resolvers = this.argumentResolvers;
+        Object[] paramValues = new Object[resolvers.length];
+        for (int i = 0; i < resolvers.length; i++) {
+            if (resolvers[i] != null) {
+                paramValues[i] = resolvers[i].resolve(request, response);
             }
-
-            int index = paramIndexMapping.get(parm.getKey());
-            paramValues[index] = parseStringValue(value, paramsTypes[index]);
         }
 
-        //填充HttpServletRequest参数
-        if (paramIndexMapping.containsKey(HttpServletRequest.class.getName())) {
-            int reqIndex = paramIndexMapping.get(HttpServletRequest.class.getName());
-            paramValues[reqIndex] = request;
-        }
-
-        //填充HttpServletResponse参数
-        if (paramIndexMapping.containsKey(HttpServletResponse.class.getName())) {
-            int respIndex = paramIndexMapping.get(HttpServletResponse.class.getName());
-            paramValues[respIndex] = response;
-        }
-
-        //反射调用controller的方法
-        Object result = handlerMapping.getMethod().invoke(handlerMapping.getController(), paramValues);
+        //通过启动时生成的调用器调用controller的方法
+        Object result = handlerMapping.getInvoker().invoke(handlerMapping.getController(), paramValues);
         if (result == null || result instanceof Void) {
             return null;
         }
 
         //解析controller的方法返回
-        Class<?> returnType = handlerMapping.getMethod().getReturnType();
-        boolean isModelAndView = returnType == ModelAndView.class;
-        if (isModelAndView) {
+        if (this.returnsModelAndView) {
             return (ModelAndView) result;
-        } else if (returnType == Void.class) {
-            return null;
-        } else if (returnType == String.class) {
-            //return (String) result;
         }
 
         return null;
     }
 
+    /**
+     * 把request中同名的多个参数值拼成一个字符串
+     * 结果和 Arrays.toString(values).replaceAll("\\[|\\]", "").replaceAll("\\s", ",") 一致，但不走正则
+     */
+    private static String joinParameterValues(String[] values) {
+        if (values.length == 1 && isPlain(values[0])) {
+            return values[0];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                //Arrays.toString的分隔符", "，空白被替换为","
+                sb.append(",,");
+            }
+            String value = String.valueOf(values[i]);
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '[' || c == ']') {
+                    continue;
+                }
+                sb.append(isWhitespace(c) ? ',' : c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isPlain(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '[' || c == ']' || isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 和正则中的\s保持一致
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     /**
      * request中接收的参数都是string类型的，需要转换为controller中实际的参数类型
      */
-    private Object parseStringValue(String value, Class<?> paramsType) {
+    private static Object parseStringValue(String value, Class<?> paramsType) {
         if (String.class == paramsType) {
             return value;
         }
@@ -112,4 +149,61 @@ public class HandlerAdapter {
         //还有，继续加if
         //其他类型在这里暂时不实现，希望小伙伴自己来实现
     }
+
+    /**
+     * 单个形参的取值方式
+     */
+    private interface ArgumentResolver {
+        Object resolve(HttpServletRequest request, HttpServletResponse response) throws Exception;
+    }
+
+    /**
+     * 绑定@RequestParam参数
+     */
+    private static class RequestParamResolver implements ArgumentResolver {
+
+        private final String paramName;
+
+        private final Class<?> paramType;
+
+        RequestParamResolver(String paramName, Class<?> paramType) {
+            this.paramName = paramName;
+            this.paramType = paramType;
+        }
+
+        @Override
+        public Object resolve(HttpServletRequest request, HttpServletResponse response) {
+            String[] values = request.getParameterValues(this.paramName);
+            if (values == null) {
+                return null;
+            }
+            return parseStringValue(joinParameterValues(values), this.paramType);
+        }
+    }
+
+    /**
+     * 绑定HttpServletRequest参数
+     */
+    private static class RequestResolver implements ArgumentResolver {
+
+        static final RequestResolver INSTANCE = new RequestResolver();
+
+        @Override
+        public Object resolve(HttpServletRequest request, HttpServletResponse response) {
+            return request;
+        }
+    }
+
+    /**
+     * 绑定HttpServletResponse参数
+     */
+    private static class ResponseResolver implements ArgumentResolver {
+
+        static final ResponseResolver INSTANCE = new ResponseResolver();
+
+        @Override
+        public Object resolve(HttpServletRequest request, HttpServletResponse response) {
+            return response;
+        }
+    }
 }
@@ -17,10 +17,14 @@ public class HandlerMapping {
     //URL的正则匹配
     private Pattern pattern;
 
+    //方法的调用器，启动时生成，避免每次请求走反射
+    private HandlerMethodInvoker invoker;
+
     public HandlerMapping(Object controller, Method method, Pattern pattern) {
         this.controller = controller;
         this.method = method;
         this.pattern = pattern;
+        this.invoker = HandlerMethodInvokerFactory.create(method);
     }
 
 }
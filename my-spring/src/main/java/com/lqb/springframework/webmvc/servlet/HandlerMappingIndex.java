@@ -0,0 +1,226 @@
+package com.lqb.springframework.webmvc.servlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * URL到HandlerMapping的路由索引，在initHandlerMappings时构建一次
+ * 按路径段组织成一棵前缀树，查找的开销只和URL的段数有关，和注册的路由数量无关
+ *
+ * 匹配优先级（越靠前越具体）：
+ * 1、字面量段，如 /user/list
+ * 2、单段正则，如 /user/[0-9]+ ，只在一个路径段内匹配
+ * 3、通配段 *，可以匹配一个或多个路径段
+ * 4、无法按段拆分的正则（如 /user* 这种跨段的写法），放在前缀树之外逐个匹配，
+ *    和经过通配段的前缀树结果按表达式长度比较，/user.* 优先于 /.*；前缀树中不经过通配段的结果总是优先
+ * 同一级的多个正则按表达式长度从长到短排序（长度相同按字典序），保证匹配结果不依赖注册顺序
+ */
+public class HandlerMappingIndex {
+
+    /**通配段，由@RequestMapping中的*转换而来*/
+    private static final String WILDCARD = ".*";
+
+    /**出现这些字符的路径段需要按正则处理*/
+    private static final String REGEX_META_CHARS = ".\\[]{}()*+?^$|";
+
+    private final Node root = new Node();
+
+    /**无法放进前缀树的路由*/
+    private final List<HandlerMapping> fallbackMappings = new ArrayList<>();
+
+    /**
+     * 注册一个HandlerMapping，同一个路径重复注册时保留先注册的
+     */
+    public void register(HandlerMapping handlerMapping) {
+        String regex = handlerMapping.getPattern().pattern();
+        String[] segments = split(regex);
+
+        //先检查每一段能否独立处理，不能的话整条路由走正则兜底
+        Pattern[] segmentPatterns = new Pattern[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (WILDCARD.equals(segment) || isLiteral(segment)) {
+                continue;
+            }
+            if (segment.contains(WILDCARD)) {
+                addFallback(handlerMapping);
+                return;
+            }
+            try {
+                segmentPatterns[i] = Pattern.compile(segment);
+            } catch (PatternSyntaxException e) {
+                addFallback(handlerMapping);
+                return;
+            }
+        }
+
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (WILDCARD.equals(segment)) {
+                if (node.wildcardChild == null) {
+                    node.wildcardChild = new Node();
+                }
+                node = node.wildcardChild;
+            } else if (segmentPatterns[i] == null) {
+                Node child = node.literalChildren.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literalChildren.put(segment, child);
+                }
+                node = child;
+            } else {
+                node = node.regexChild(segment, segmentPatterns[i]);
+            }
+        }
+
+        if (node.handler != null) {
+            System.out.println("Ignored duplicate mapping " + regex + "," + handlerMapping.getMethod());
+            return;
+        }
+        node.handler = handlerMapping;
+    }
+
+    private void addFallback(HandlerMapping handlerMapping) {
+        int i = 0;
+        while (i < fallbackMappings.size()
+                && compareRegex(fallbackMappings.get(i).getPattern().pattern(), handlerMapping.getPattern().pattern()) <= 0) {
+            i++;
+        }
+        fallbackMappings.add(i, handlerMapping);
+    }
+
+    /**
+     * 根据请求路径查找最具体的HandlerMapping，没有匹配返回null
+     */
+    public HandlerMapping lookup(String url) {
+        String[] segments = split(url);
+        //只由字面量和单段正则组成的路由最具体
+        HandlerMapping handler = match(root, segments, 0, false);
+        if (handler != null) {
+            return handler;
+        }
+
+        //经过通配段的路由和兜底的正则一起比较具体程度
+        handler = match(root, segments, 0, true);
+        for (HandlerMapping handlerMapping : fallbackMappings) {
+            if (handler != null && compareRegex(handlerMapping.getPattern().pattern(), handler.getPattern().pattern()) >= 0) {
+                break;
+            }
+            if (handlerMapping.getPattern().matcher(url).matches()) {
+                return handlerMapping;
+            }
+        }
+        return handler;
+    }
+
+    private HandlerMapping match(Node node, String[] segments, int index, boolean allowWildcard) {
+        if (index == segments.length) {
+            return node.handler;
+        }
+
+        String segment = segments[index];
+
+        //1、字面量
+        Node literal = node.literalChildren.get(segment);
+        if (literal != null) {
+            HandlerMapping handler = match(literal, segments, index + 1, allowWildcard);
+            if (handler != null) {
+                return handler;
+            }
+        }
+
+        //2、单段正则
+        for (int i = 0; i < node.regexChildren.size(); i++) {
+            Node child = node.regexChildren.get(i);
+            if (child.pattern.matcher(segment).matches()) {
+                HandlerMapping handler = match(child, segments, index + 1, allowWildcard);
+                if (handler != null) {
+                    return handler;
+                }
+            }
+        }
+
+        //3、通配，至少吃掉一段，优先少吃，让后面的段尽量按字面量匹配
+        Node wildcard = node.wildcardChild;
+        if (wildcard != null && allowWildcard) {
+            for (int next = index + 1; next <= segments.length; next++) {
+                HandlerMapping handler = match(wildcard, segments, next, true);
+                if (handler != null) {
+                    return handler;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按/切分路径，去掉开头的/，保留结尾的空段（/web/和/web是不同的路径）
+     */
+    private static String[] split(String path) {
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path.split("/", -1);
+    }
+
+    /**
+     * 正则的具体程度比较，越长越靠前
+     */
+    private static int compareRegex(String r1, String r2) {
+        if (r1.length() != r2.length()) {
+            return r2.length() - r1.length();
+        }
+        return r1.compareTo(r2);
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (REGEX_META_CHARS.indexOf(segment.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+
+        /**字面量子节点*/
+        private final Map<String, Node> literalChildren = new HashMap<>();
+
+        /**单段正则子节点，按具体程度排序*/
+        private final List<Node> regexChildren = new ArrayList<>();
+
+        /**通配子节点*/
+        private Node wildcardChild;
+
+        /**正则节点的表达式*/
+        private Pattern pattern;
+
+        /**路径在该节点结束时对应的handler*/
+        private HandlerMapping handler;
+
+        private Node regexChild(String regex, Pattern pattern) {
+            for (Node child : regexChildren) {
+                if (child.pattern.pattern().equals(regex)) {
+                    return child;
+                }
+            }
+            Node child = new Node();
+            child.pattern = pattern;
+            int i = 0;
+            while (i < regexChildren.size() && compareRegex(regexChildren.get(i).pattern.pattern(), regex) < 0) {
+                i++;
+            }
+            regexChildren.add(i, child);
+            return child;
+        }
+    }
+}
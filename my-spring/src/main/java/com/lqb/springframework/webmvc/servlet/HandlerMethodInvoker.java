@@ -0,0 +1,12 @@
+package com.lqb.springframework.webmvc.servlet;
+
+/**
+ * controller方法的调用器，启动时为每个HandlerMapping生成一个
+ */
+public interface HandlerMethodInvoker {
+
+    /**
+     * 调用controller方法，方法内抛出的异常原样抛出，不再包装成InvocationTargetException
+     */
+    Object invoke(Object controller, Object[] args) throws Exception;
+}
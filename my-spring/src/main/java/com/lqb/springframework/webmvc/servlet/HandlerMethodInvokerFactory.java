@@ -0,0 +1,273 @@
+package com.lqb.springframework.webmvc.servlet;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 为controller方法生成调用器，按下面的顺序尝试：
+ * 1、LambdaMetafactory生成直接调用的类，生成的类里是普通的方法调用，没有反射的访问检查和参数数组拆包
+ * 2、MethodHandle绑定，用于参数过多、void返回、静态方法等LambdaMetafactory不好处理的情况
+ * 3、反射，只有在前面两种都无法访问目标方法时才使用
+ *
+ * 注意：所有controller都经过HandlerAdapter中同一个HandlerMethodInvoker.invoke调用点，
+ * 有多个controller方法时这个调用点是多态的（megamorphic），JIT不会把controller方法内联到分发逻辑中，
+ * 节省的是反射调用本身的开销，而不是虚调用的开销
+ */
+public class HandlerMethodInvokerFactory {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**按参数个数对应的函数式接口，下标即参数个数*/
+    private static final Class<?>[] LAMBDA_INTERFACES = {
+            Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class, Invoker4.class
+    };
+
+    private HandlerMethodInvokerFactory() {
+    }
+
+    public static HandlerMethodInvoker create(Method method) {
+        HandlerMethodInvoker invoker = createLambdaInvoker(method);
+        if (invoker != null) {
+            return invoker;
+        }
+        invoker = createMethodHandleInvoker(method);
+        if (invoker != null) {
+            return invoker;
+        }
+        return new ReflectiveInvoker(method);
+    }
+
+    private static HandlerMethodInvoker createLambdaInvoker(Method method) {
+        int paramCount = method.getParameterCount();
+        if (paramCount >= LAMBDA_INTERFACES.length
+                || method.getReturnType() == void.class
+                || Modifier.isStatic(method.getModifiers())
+                || !isAccessible(method)) {
+            return null;
+        }
+        try {
+            MethodHandle impl = LOOKUP.unreflect(method);
+            Class<?> lambdaInterface = LAMBDA_INTERFACES[paramCount];
+            //接口方法签名全是Object，实际调用时由生成的类做类型转换和拆装箱
+            CallSite callSite = LambdaMetafactory.metafactory(
+                    LOOKUP,
+                    "invoke",
+                    MethodType.methodType(lambdaInterface),
+                    MethodType.genericMethodType(paramCount + 1),
+                    impl,
+                    impl.type().wrap());
+            Object target = callSite.getTarget().invoke();
+            switch (paramCount) {
+                case 0:
+                    return new LambdaInvoker0((Invoker0) target);
+                case 1:
+                    return new LambdaInvoker1((Invoker1) target);
+                case 2:
+                    return new LambdaInvoker2((Invoker2) target);
+                case 3:
+                    return new LambdaInvoker3((Invoker3) target);
+                default:
+                    return new LambdaInvoker4((Invoker4) target);
+            }
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static HandlerMethodInvoker createMethodHandleInvoker(Method method) {
+        try {
+            if (!isAccessible(method)) {
+                method.setAccessible(true);
+            }
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            //统一成(Object, Object[])Object，void方法返回null
+            handle = handle.asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+            return new MethodHandleInvoker(handle);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 生成的类和框架在同一个类加载器下，需要能直接访问目标方法、所属类以及参数和返回值的类型
+     */
+    private static boolean isAccessible(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+        if (!isVisible(declaringClass) || !isVisible(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isVisible(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, HandlerMethodInvokerFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 把Throwable按原样抛出，普通方法里只能声明Exception
+     */
+    private static Exception rethrow(Throwable e) throws Exception {
+        if (e instanceof Exception) {
+            throw (Exception) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new InvocationTargetException(e);
+    }
+
+    interface Invoker0 {
+        Object invoke(Object controller) throws Exception;
+    }
+
+    interface Invoker1 {
+        Object invoke(Object controller, Object a1) throws Exception;
+    }
+
+    interface Invoker2 {
+        Object invoke(Object controller, Object a1, Object a2) throws Exception;
+    }
+
+    interface Invoker3 {
+        Object invoke(Object controller, Object a1, Object a2, Object a3) throws Exception;
+    }
+
+    interface Invoker4 {
+        Object invoke(Object controller, Object a1, Object a2, Object a3, Object a4) throws Exception;
+    }
+
+    private static class LambdaInvoker0 implements HandlerMethodInvoker {
+
+        private final Invoker0 invoker;
+
+        LambdaInvoker0(Invoker0 invoker) {
+            this.invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            return invoker.invoke(controller);
+        }
+    }
+
+    private static class LambdaInvoker1 implements HandlerMethodInvoker {
+
+        private final Invoker1 invoker;
+
+        LambdaInvoker1(Invoker1 invoker) {
+            this.invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            return invoker.invoke(controller, args[0]);
+        }
+    }
+
+    private static class LambdaInvoker2 implements HandlerMethodInvoker {
+
+        private final Invoker2 invoker;
+
+        LambdaInvoker2(Invoker2 invoker) {
+            this.invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            return invoker.invoke(controller, args[0], args[1]);
+        }
+    }
+
+    private static class LambdaInvoker3 implements HandlerMethodInvoker {
+
+        private final Invoker3 invoker;
+
+        LambdaInvoker3(Invoker3 invoker) {
+            this.invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            return invoker.invoke(controller, args[0], args[1], args[2]);
+        }
+    }
+
+    private static class LambdaInvoker4 implements HandlerMethodInvoker {
+
+        private final Invoker4 invoker;
+
+        LambdaInvoker4(Invoker4 invoker) {
+            this.invoker = invoker;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            return invoker.invoke(controller, args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    private static class MethodHandleInvoker implements HandlerMethodInvoker {
+
+        private final MethodHandle handle;
+
+        MethodHandleInvoker(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            try {
+                return (Object) handle.invokeExact(controller, args);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    private static class ReflectiveInvoker implements HandlerMethodInvoker {
+
+        private final Method method;
+
+        ReflectiveInvoker(Method method) {
+            this.method = method;
+            this.method.setAccessible(true);
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] args) throws Exception {
+            try {
+                return method.invoke(controller, args);
+            } catch (InvocationTargetException e) {
+                throw rethrow(e.getTargetException());
+            }
+        }
+    }
+}
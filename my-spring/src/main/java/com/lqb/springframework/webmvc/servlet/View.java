@@ -1,23 +1,139 @@
 package com.lqb.springframework.webmvc.servlet;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
-import java.io.RandomAccessFile;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class View {
 
+    /**流式输出时每个线程复用的缓冲区大小*/
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
     /**模板*/
     private File viewFile;
 
+    /**编译时模板文件的修改时间*/
+    private long lastModified;
+
     /**占位符表达式*/
     private Pattern pattern = Pattern.compile("#\\{[^\\}]+\\}", Pattern.CASE_INSENSITIVE);
 
-    public View(File viewFile) {
+    /**
+     * 编译后的模板：literals[0] + 占位符[0] + literals[1] + ... + 占位符[n-1] + literals[n]
+     */
+    private String[] literals;
+
+    /**占位符对应的参数名*/
+    private String[] paramNames;
+
+    /**占位符原文，model中没有对应参数时原样输出*/
+    private String[] placeholders;
+
+    /**UTF-8编码后的字面量，流式输出时使用*/
+    private byte[][] literalBytes;
+
+    /**UTF-8编码后的占位符原文*/
+    private byte[][] placeholderBytes;
+
+    /**是否直接写到response的OutputStream*/
+    private boolean streaming;
+
+    public View(File viewFile) throws Exception {
+        this(viewFile, false);
+    }
+
+    public View(File viewFile, boolean streaming) throws Exception {
         this.viewFile = viewFile;
+        this.streaming = streaming;
+        compile();
+    }
+
+    /**
+     * 读取模板并解析成字面量和占位符，只在创建View时执行一次
+     */
+    private void compile() throws Exception {
+        this.lastModified = this.viewFile.lastModified();
+        String content = new String(Files.readAllBytes(this.viewFile.toPath()), StandardCharsets.UTF_8);
+
+        List<String> literalList = new ArrayList<>();
+        List<String> nameList = new ArrayList<>();
+        List<String> placeholderList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        //和逐行读取时一样，占位符不跨行，换行符不输出
+        int lineStart = 0;
+        while (lineStart < content.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < content.length() && content.charAt(lineEnd) != '\n' && content.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            String line = content.substring(lineStart, lineEnd);
+
+            Matcher matcher = this.pattern.matcher(line);
+            int last = 0;
+            while (matcher.find()) {
+                literal.append(line, last, matcher.start());
+                literalList.add(literal.toString());
+                literal.setLength(0);
+
+                String placeholder = matcher.group();
+                nameList.add(placeholder.replaceAll("#\\{|\\}", ""));
+                placeholderList.add(placeholder);
+                last = matcher.end();
+            }
+            literal.append(line, last, line.length());
+
+            //跳过\n、\r或\r\n
+            if (lineEnd < content.length() && content.charAt(lineEnd) == '\r') {
+                lineEnd++;
+            }
+            if (lineEnd < content.length() && content.charAt(lineEnd) == '\n') {
+                lineEnd++;
+            }
+            lineStart = lineEnd;
+        }
+        literalList.add(literal.toString());
+
+        this.literals = literalList.toArray(new String[0]);
+        this.paramNames = nameList.toArray(new String[0]);
+        this.placeholders = placeholderList.toArray(new String[0]);
+
+        if (this.streaming) {
+            this.literalBytes = encode(this.literals);
+            this.placeholderBytes = encode(this.placeholders);
+        }
+    }
+
+    private static byte[][] encode(String[] strings) {
+        byte[][] result = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            result[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    public File getViewFile() {
+        return this.viewFile;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    public boolean isStreaming() {
+        return this.streaming;
     }
 
     /**
@@ -27,34 +143,94 @@ public class View {
                        HttpServletRequest request,
                        HttpServletResponse response) throws Exception {
 
-        StringBuilder sb = new StringBuilder();
-        RandomAccessFile ra = new RandomAccessFile(this.viewFile, "r");
-        String line;
+        response.setCharacterEncoding("utf-8");
+        if (this.streaming) {
+            renderToStream(model, response.getOutputStream());
+            return;
+        }
 
-        while (null != (line = ra.readLine())) {
-            line = new String(line.getBytes("ISO-8859-1"), "utf-8");
-            Matcher matcher = this.pattern.matcher(line);
-            //找到下一个占位符
-            while (matcher.find()) {
-                String paramName = matcher.group();
-                paramName = paramName.replaceAll("#\\{|\\}", "");
-                Object paramValue = model.get(paramName);
-                if (null == paramValue) {
-                    continue;
-                }
-                //替换占位符为实际值
-                line = matcher.replaceFirst(makeStringForRegExp(paramValue.toString()));
-                //接着匹配下一个占位符
-                matcher = pattern.matcher(line);
+        //按顺序把字面量和参数值直接写到response
+        PrintWriter writer = response.getWriter();
+        writer.write(this.literals[0]);
+        for (int i = 0; i < this.paramNames.length; i++) {
+            Object paramValue = model == null ? null : model.get(this.paramNames[i]);
+            writer.write(null == paramValue ? this.placeholders[i] : paramValue.toString());
+            writer.write(this.literals[i + 1]);
+        }
+    }
+
+    /**
+     * 流式渲染，字面量已经提前编码好，参数值直接编码到复用的缓冲区，
+     * 缓冲区写满就输出，不需要先拼出整个页面
+     */
+    private void renderToStream(Map<String, ?> model, ServletOutputStream out) throws IOException {
+        byte[] buffer = BUFFER.get();
+        int pos = write(out, buffer, 0, this.literalBytes[0]);
+        for (int i = 0; i < this.paramNames.length; i++) {
+            Object paramValue = model == null ? null : model.get(this.paramNames[i]);
+            if (null == paramValue) {
+                pos = write(out, buffer, pos, this.placeholderBytes[i]);
+            } else {
+                pos = writeUtf8(out, buffer, pos, paramValue.toString());
             }
-            sb.append(line);
+            pos = write(out, buffer, pos, this.literalBytes[i + 1]);
+        }
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
         }
+    }
 
-        response.setCharacterEncoding("utf-8");
-        //输出到response
-        response.getWriter().write(sb.toString());
+    private static int write(ServletOutputStream out, byte[] buffer, int pos, byte[] bytes) throws IOException {
+        if (pos + bytes.length <= buffer.length) {
+            System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+            return pos + bytes.length;
+        }
+        //放不下就先把缓冲区输出，大段字面量直接写
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+        }
+        if (bytes.length >= buffer.length) {
+            out.write(bytes);
+            return 0;
+        }
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+        return bytes.length;
     }
 
+    /**
+     * 把字符串按UTF-8编码写入缓冲区，不产生中间的byte数组
+     */
+    private static int writeUtf8(ServletOutputStream out, byte[] buffer, int pos, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            //一个字符最多编码成4个字节，剩余空间不够就先输出
+            if (pos + 4 > buffer.length) {
+                out.write(buffer, 0, pos);
+                pos = 0;
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符，和String.getBytes一样输出?
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
 
     //处理特殊字符
     public static String makeStringForRegExp(String str) {
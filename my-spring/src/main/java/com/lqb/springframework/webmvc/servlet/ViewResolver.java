@@ -2,6 +2,11 @@ package com.lqb.springframework.webmvc.servlet;
 
 import java.io.File;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class ViewResolver {
 
@@ -10,6 +15,15 @@ public class ViewResolver {
     /**模板根目录*/
     private File templateRootDir;
 
+    /**编译好的View，key为模板名*/
+    private final Map<String, View> viewCache = new ConcurrentHashMap<>();
+
+    /**是否使用流式渲染*/
+    private boolean streaming;
+
+    /**模板热更新的后台线程，未开启时为null*/
+    private ScheduledExecutorService reloadExecutor;
+
     public ViewResolver(String templateRoot) {
         String templateRootPath = this.getClass().getClassLoader().getResource(templateRoot).getFile();
         templateRootDir = new File(templateRootPath);
@@ -17,8 +31,79 @@ public class ViewResolver {
 
     public View resolveViewName(String viewName, Locale locale) throws Exception{
         if(null == viewName || "".equals(viewName.trim())){return null;}
-        viewName = viewName.endsWith(DEFAULT_TEMPLATE_SUFFIX) ? viewName : (viewName + DEFAULT_TEMPLATE_SUFFIX);
-        File templateFile = new File((templateRootDir.getPath() + "/" + viewName).replaceAll("/+","/"));
-        return new View(templateFile);
+        View view = viewCache.get(viewName);
+        if (view != null) {
+            return view;
+        }
+
+        //第一次使用时编译模板，并发时可能重复编译，结果相同，以先放入缓存的为准
+        view = createView(viewName);
+        View existing = viewCache.putIfAbsent(viewName, view);
+        return existing == null ? view : existing;
+    }
+
+    private View createView(String viewName) throws Exception {
+        String fileName = viewName.endsWith(DEFAULT_TEMPLATE_SUFFIX) ? viewName : (viewName + DEFAULT_TEMPLATE_SUFFIX);
+        File templateFile = new File((templateRootDir.getPath() + "/" + fileName).replaceAll("/+","/"));
+        return new View(templateFile, this.streaming);
+    }
+
+    /**
+     * 开启后View直接把编码好的字节写到response的OutputStream，适合大页面
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * 开启模板热更新，后台线程按固定间隔检查已缓存模板的修改时间，
+     * 只重新编译发生变化的模板，请求线程不会访问文件系统
+     */
+    public synchronized void enableReload(long intervalMillis) {
+        if (this.reloadExecutor != null || intervalMillis <= 0) {
+            return;
+        }
+        this.reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "view-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reloadExecutor.scheduleWithFixedDelay(this::reloadModifiedViews,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭模板热更新
+     */
+    public synchronized void destroy() {
+        if (this.reloadExecutor != null) {
+            this.reloadExecutor.shutdownNow();
+            this.reloadExecutor = null;
+        }
+    }
+
+    private void reloadModifiedViews() {
+        for (Map.Entry<String, View> entry : viewCache.entrySet()) {
+            View view = entry.getValue();
+            File viewFile = view.getViewFile();
+            long lastModified = viewFile.lastModified();
+            if (lastModified == view.getLastModified()) {
+                continue;
+            }
+
+            //模板被删除，从缓存中移除，下次请求时按原来的方式报错
+            if (!viewFile.exists()) {
+                viewCache.remove(entry.getKey(), view);
+                continue;
+            }
+
+            try {
+                viewCache.replace(entry.getKey(), view, new View(viewFile, view.isStreaming()));
+                System.out.println("Reloaded view " + viewFile);
+            } catch (Exception e) {
+                //文件可能正在写入，保留旧的View，下一轮再试
+                e.printStackTrace();
+            }
+        }
     }
 }
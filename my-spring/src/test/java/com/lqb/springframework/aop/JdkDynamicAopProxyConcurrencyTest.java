@@ -0,0 +1,308 @@
+package com.lqb.springframework.aop;
+
+import com.lqb.springframework.aop.aspect.JoinPoint;
+import com.lqb.springframework.aop.config.AopConfig;
+import com.lqb.springframework.aop.support.AdvisedSupport;
+import com.lqb.springframework.aop.support.AspectAdvisor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 多个线程同时调用同一个JDK动态代理，每次调用的通知只能看到自己的参数、返回值和异常
+ */
+public class JdkDynamicAopProxyConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    private static final int CALLS = 20000;
+
+    /**每隔多少次调用保留一次JoinPoint，调用结束之后再检查*/
+    private static final int RETAIN_EVERY = 1000;
+
+    private Calculator calculator;
+
+    @Before
+    public void setUp() throws Exception {
+        CheckAspect.reset();
+
+        AopConfig config = new AopConfig();
+        config.setPointCut("public * com.lqb.springframework.aop..*Calculator*.*(..)");
+        config.setAspectClass(CheckAspect.class.getName());
+        config.setAspectBefore("before");
+        config.setAspectAfter("afterReturning");
+        config.setAspectAfterThrow("afterThrowing");
+        config.setAspectAfterThrowingName(IllegalStateException.class.getName());
+
+        AdvisedSupport advised = new AdvisedSupport(Collections.singletonList(new AspectAdvisor(config)));
+        advised.setTargetClass(DefaultCalculator.class);
+        advised.setTarget(new DefaultCalculator());
+        this.calculator = (Calculator) new JdkDynamicAopProxy(advised).getProxy();
+    }
+
+    @Test
+    public void adviceSeesItsOwnArgumentsAndReturnValue() throws Exception {
+        runConcurrently((thread, i) -> {
+            int a = thread * CALLS + i;
+            int b = i;
+            CheckAspect.expect(a, b, a + b);
+            int result = this.calculator.add(a, b);
+            if (result != a + b) {
+                CheckAspect.MISMATCHES.incrementAndGet();
+            }
+        });
+
+        assertEquals(0, CheckAspect.MISMATCHES.get());
+        assertEquals(THREADS * CALLS, CheckAspect.BEFORE.get());
+        assertEquals(THREADS * CALLS, CheckAspect.AFTER_RETURNING.get());
+        assertEquals(0, CheckAspect.AFTER_THROWING.get());
+
+        //调用结束之后保留的JoinPoint不能被其他调用改写
+        assertEquals(THREADS * CALLS / RETAIN_EVERY, CheckAspect.RETAINED.size());
+        for (RetainedJoinPoint retained : CheckAspect.RETAINED) {
+            assertEquals(retained.a, retained.joinPoint.getArguments()[0]);
+            assertEquals(retained.b, retained.joinPoint.getArguments()[1]);
+        }
+    }
+
+    @Test
+    public void adviceSeesItsOwnException() throws Exception {
+        runConcurrently((thread, i) -> {
+            int id = thread * CALLS + i;
+            CheckAspect.expect(id, 0, null);
+            try {
+                this.calculator.fail(id);
+                CheckAspect.MISMATCHES.incrementAndGet();
+            } catch (IllegalStateException e) {
+                if (!("fail " + id).equals(e.getMessage())) {
+                    CheckAspect.MISMATCHES.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, CheckAspect.MISMATCHES.get());
+        assertEquals(THREADS * CALLS, CheckAspect.BEFORE.get());
+        assertEquals(0, CheckAspect.AFTER_RETURNING.get());
+        assertEquals(THREADS * CALLS, CheckAspect.AFTER_THROWING.get());
+    }
+
+    @Test
+    public void adviceWithoutJoinPointSkipsMethodInvocation() throws Exception {
+        AopConfig config = new AopConfig();
+        config.setPointCut("public * com.lqb.springframework.aop..*Calculator*.*(..)");
+        config.setAspectClass(ResultAspect.class.getName());
+        config.setAspectBefore("before");
+        config.setAspectAfter("afterReturning");
+        config.setAspectAfterThrow("afterThrowing");
+
+        AdvisedSupport advised = new AdvisedSupport(Collections.singletonList(new AspectAdvisor(config)));
+        advised.setTargetClass(DefaultCalculator.class);
+        advised.setTarget(new DefaultCalculator());
+        Calculator calculator = (Calculator) new JdkDynamicAopProxy(advised).getProxy();
+        assertFalse(advised.getInterceptorChain(Calculator.class.getMethod("add", int.class, int.class)).needsJoinPoint());
+
+        ResultAspect.reset();
+        runConcurrently((thread, i) -> {
+            ResultAspect.EXPECTED.set(thread + i);
+            calculator.add(thread, i);
+        });
+        assertEquals(0, ResultAspect.MISMATCHES.get());
+        assertEquals(THREADS * CALLS, ResultAspect.BEFORE.get());
+
+        try {
+            calculator.fail(1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertSame(e, ResultAspect.THROWN.get());
+        }
+    }
+
+    /**
+     * 所有线程同时开始，每个线程调用CALLS次
+     */
+    private void runConcurrently(Call call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit((Callable<Object>) () -> {
+                    ready.await();
+                    for (int i = 0; i < CALLS; i++) {
+                        call.run(thread, i);
+                    }
+                    return null;
+                }));
+            }
+            ready.countDown();
+            for (Future<Object> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Call {
+        void run(int thread, int i) throws Exception;
+    }
+
+    public interface Calculator {
+
+        int add(int a, int b);
+
+        int fail(int id);
+    }
+
+    public static class DefaultCalculator implements Calculator {
+
+        @Override
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Override
+        public int fail(int id) {
+            throw new IllegalStateException("fail " + id);
+        }
+    }
+
+    private static class RetainedJoinPoint {
+
+        private final JoinPoint joinPoint;
+
+        private final int a;
+
+        private final int b;
+
+        RetainedJoinPoint(JoinPoint joinPoint, int a, int b) {
+            this.joinPoint = joinPoint;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    /**
+     * 检查通知收到的数据是否属于当前线程正在进行的调用
+     */
+    public static class CheckAspect {
+
+        static final AtomicInteger MISMATCHES = new AtomicInteger();
+
+        static final AtomicInteger BEFORE = new AtomicInteger();
+
+        static final AtomicInteger AFTER_RETURNING = new AtomicInteger();
+
+        static final AtomicInteger AFTER_THROWING = new AtomicInteger();
+
+        static final Queue<RetainedJoinPoint> RETAINED = new ConcurrentLinkedQueue<>();
+
+        /**当前线程的调用：{a, b}和期望的返回值*/
+        private static final ThreadLocal<Object[]> EXPECTED = new ThreadLocal<>();
+
+        /**前置通知收到的JoinPoint，后置通知和异常通知收到的必须是同一个*/
+        private static final ThreadLocal<JoinPoint> LAST = new ThreadLocal<>();
+
+        static void reset() {
+            MISMATCHES.set(0);
+            BEFORE.set(0);
+            AFTER_RETURNING.set(0);
+            AFTER_THROWING.set(0);
+            RETAINED.clear();
+        }
+
+        static void expect(int a, int b, Integer result) {
+            EXPECTED.set(new Object[]{a, b, result});
+        }
+
+        public void before(JoinPoint joinPoint) {
+            BEFORE.incrementAndGet();
+            LAST.set(joinPoint);
+            checkArguments(joinPoint);
+        }
+
+        public void afterReturning(JoinPoint joinPoint, Object result) {
+            AFTER_RETURNING.incrementAndGet();
+            checkArguments(joinPoint);
+            Object[] expected = EXPECTED.get();
+            if (!expected[2].equals(result)) {
+                MISMATCHES.incrementAndGet();
+            }
+            int a = (Integer) expected[0];
+            if (a % RETAIN_EVERY == 0) {
+                RETAINED.add(new RetainedJoinPoint(joinPoint, a, (Integer) expected[1]));
+            }
+        }
+
+        public void afterThrowing(JoinPoint joinPoint, Throwable e) {
+            AFTER_THROWING.incrementAndGet();
+            checkArguments(joinPoint);
+            if (!("fail " + EXPECTED.get()[0]).equals(e.getMessage())) {
+                MISMATCHES.incrementAndGet();
+            }
+        }
+
+        private static void checkArguments(JoinPoint joinPoint) {
+            Object[] expected = EXPECTED.get();
+            Object[] arguments = joinPoint.getArguments();
+            if (LAST.get() != joinPoint || !expected[0].equals(arguments[0])
+                    || (arguments.length > 1 && !expected[1].equals(arguments[1]))) {
+                MISMATCHES.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 没有JoinPoint参数的通知，只接收返回值和异常
+     */
+    public static class ResultAspect {
+
+        static final AtomicInteger MISMATCHES = new AtomicInteger();
+
+        static final AtomicInteger BEFORE = new AtomicInteger();
+
+        static final AtomicReference<Throwable> THROWN = new AtomicReference<>();
+
+        /**当前线程调用的期望返回值*/
+        static final ThreadLocal<Integer> EXPECTED = new ThreadLocal<>();
+
+        static void reset() {
+            MISMATCHES.set(0);
+            BEFORE.set(0);
+            THROWN.set(null);
+        }
+
+        public void before() {
+            BEFORE.incrementAndGet();
+        }
+
+        public void afterReturning(Object result) {
+            if (!EXPECTED.get().equals(result)) {
+                MISMATCHES.incrementAndGet();
+            }
+        }
+
+        public void afterThrowing(Throwable e) {
+            THROWN.set(e);
+        }
+    }
+}